@@ -0,0 +1,127 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * {@link StencilKernel} on the Vector API, eight cells of a row per step.
+ *
+ * The cell contents are loaded as bytes and converted to the lanes of the W and Q vectors
+ * before they are compared (casting a byte mask is not compiled into vector code). The scalar kernel rounds every partial sum of a Q-value to float, so does this one
+ * by converting the double lanes to float and back, and the argmax uses the same strict comparisons
+ * as the scalar one, so both kernels produce identical values and policies. The cells at the end
+ * of a row that do not fill a vector are backed up by the scalar kernel.
+ *
+ * Compiled with JDK 16 or newer with --add-modules jdk.incubator.vector, see {@link StencilKernel}.
+ */
+final class VectorStencilKernel extends StencilKernel {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_256;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_512;
+    private static final int LANES = BYTES.length();
+
+    private static final double P_INTENDED = SlipModel.STANDARD.getIntended();
+    private static final double P_LEFT = SlipModel.STANDARD.getLeft();
+    private static final double P_RIGHT = SlipModel.STANDARD.getRight();
+
+    private static final FloatVector NORTH = FloatVector.broadcast(FLOATS, 0);
+    private static final FloatVector SOUTH = FloatVector.broadcast(FLOATS, 1);
+    private static final FloatVector EAST = FloatVector.broadcast(FLOATS, 2);
+    private static final FloatVector WEST = FloatVector.broadcast(FLOATS, 3);
+
+    // the actions are converted to bytes one by one, the vector cast to bytes is not compiled into vector code
+    private final float[] actions = new float[LANES];
+
+    @Override
+    double backupRow(byte[] cells, float[] U, float[] newU, byte[] policy,
+            int y, int width, double[] above, double[] row, double[] below) {
+
+        int cols = width - 2;
+        int base = y * width;
+        FloatVector delta = FloatVector.zero(FLOATS);
+
+        int x = 1;
+        for (; x + LANES - 1 <= cols; x += LANES) {
+            int c = base + x;
+            DoubleVector self = DoubleVector.fromArray(DOUBLES, row, x);
+
+            DoubleVector wN = self.blend(DoubleVector.fromArray(DOUBLES, above, x), free(cells, c - width));
+            DoubleVector wS = self.blend(DoubleVector.fromArray(DOUBLES, below, x), free(cells, c + width));
+            DoubleVector wE = self.blend(DoubleVector.fromArray(DOUBLES, row, x + 1), free(cells, c + 1));
+            DoubleVector wW = self.blend(DoubleVector.fromArray(DOUBLES, row, x - 1), free(cells, c - 1));
+
+            // same outcome order as SlipModel.PERPENDICULAR
+            FloatVector qN = q(wN, wE, wW);
+            FloatVector qS = q(wS, wE, wW);
+            FloatVector qE = q(wE, wN, wS);
+            FloatVector qW = q(wW, wN, wS);
+
+            FloatVector maxQ = qN;
+            FloatVector maxAction = NORTH;
+            maxAction = maxAction.blend(SOUTH, qS.compare(VectorOperators.GT, maxQ));
+            maxQ = maxQ.max(qS);
+            maxAction = maxAction.blend(EAST, qE.compare(VectorOperators.GT, maxQ));
+            maxQ = maxQ.max(qE);
+            maxAction = maxAction.blend(WEST, qW.compare(VectorOperators.GT, maxQ));
+            maxQ = maxQ.max(qW);
+
+            // absorbing cells: a self-loop with zero reward for every action
+            FloatVector u = FloatVector.fromArray(FLOATS, U, c);
+            DoubleVector loop = widen(u).mul(Solver.GAMMA).add(0.0).mul(1.0);
+            FloatVector contents = (FloatVector) ByteVector.fromArray(BYTES, cells, c)
+                    .convertShape(VectorOperators.B2F, FLOATS, 0);
+            VectorMask<Float> absorbing = contents.compare(VectorOperators.NE, EMPTY);
+            maxQ = maxQ.blend(narrow(loop), absorbing);
+            maxAction = maxAction.blend(NORTH, absorbing);
+
+            maxQ.intoArray(newU, c);
+            maxAction.intoArray(actions, 0);
+            for (int i = 0, p = (y - 1) * cols + x - 1; i < LANES; i++) {
+                policy[p + i] = (byte) actions[i];
+            }
+
+            delta = delta.max(maxQ.sub(u).abs());
+        }
+
+        double max = delta.reduceLanes(VectorOperators.MAX);
+        return Math.max(max, backupCells(cells, U, newU, policy, y, width, above, row, below, x, cols));
+    }
+
+    /**
+     * @return mask of the cells of the padded grid starting at c that are not obstacles
+     */
+    private static VectorMask<Double> free(byte[] cells, int c) {
+        DoubleVector contents = (DoubleVector) ByteVector.fromArray(BYTES, cells, c)
+                .convertShape(VectorOperators.B2D, DOUBLES, 0);
+        return contents.compare(VectorOperators.NE, OBSTACLE);
+    }
+
+    /**
+     * Q-value of the intended move and the two slips, rounded to float after each term.
+     */
+    private static FloatVector q(DoubleVector intended, DoubleVector left, DoubleVector right) {
+        DoubleVector q = round(intended.mul(P_INTENDED));
+        q = round(q.add(left.mul(P_LEFT)));
+        return narrow(q.add(right.mul(P_RIGHT)));
+    }
+
+    private static DoubleVector round(DoubleVector v) {
+        return widen(narrow(v));
+    }
+
+    private static FloatVector narrow(DoubleVector v) {
+        return (FloatVector) v.convertShape(VectorOperators.D2F, FLOATS, 0);
+    }
+
+    private static DoubleVector widen(FloatVector v) {
+        return (DoubleVector) v.convertShape(VectorOperators.F2D, DOUBLES, 0);
+    }
+
+}
@@ -1,17 +1,17 @@
-package cz.cvut.fel.oi.pah.uncertainty.viter;
+package cz.cvut.fel.oi.pah.uncertainty.grid;
 
 import javax.vecmath.Point2i;
 import javax.vecmath.Tuple2i;
 
 
-enum Action {
+public enum Action {
 
 	NORTH(0, -1),
 	SOUTH(0, +1),
 	EAST(+1, 0),
 	WEST(-1, 0);
 	
-	Tuple2i dir;
+	private final Tuple2i dir;
 		
 	private Action(int x, int y) {
 		this.dir = new Point2i(x,y);
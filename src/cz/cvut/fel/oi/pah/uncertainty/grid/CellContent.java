@@ -0,0 +1,9 @@
+package cz.cvut.fel.oi.pah.uncertainty.grid;
+
+
+public enum CellContent {
+    EMPTY,
+    OBSTACLE,
+    GOLD,
+    PIT
+}
\ No newline at end of file
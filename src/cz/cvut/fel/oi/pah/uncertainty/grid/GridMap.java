@@ -0,0 +1,168 @@
+package cz.cvut.fel.oi.pah.uncertainty.grid;
+
+import java.util.Arrays;
+
+/**
+ * Compact map of the environment.
+ *
+ * Cells are stored in row-major order (index = y * cols + x), each cell takes two bits
+ * (the ordinal of its {@link CellContent}), i.e. 32 cells are packed into one long.
+ * The same map is used by the value iteration and by the replanning agents.
+ */
+public class GridMap {
+
+	private static final CellContent[] CONTENTS = CellContent.values();
+	private static final int OBSTACLE = CellContent.OBSTACLE.ordinal();
+	private static final int PIT = CellContent.PIT.ordinal();
+
+	private final int cols;
+	private final int rows;
+	private final long[] bits;
+
+	// number of the calls of set, tells the caches that the map has changed in place
+	private int modifications;
+
+	/**
+	 * Creates an empty map.
+	 * @param cols number of columns (x-limit)
+	 * @param rows number of rows (y-limit)
+	 */
+	public GridMap(int cols, int rows) {
+		if (cols < 1 || rows < 1) {
+			throw new IllegalArgumentException("map must have at least one cell");
+		}
+		this.cols = cols;
+		this.rows = rows;
+		this.bits = new long[(int) (((long) cols * rows + 31) >>> 5)];
+	}
+
+	/**
+	 * Adapter of the legacy representation.
+	 * @param map array of the cells, first dimension is columns, second dimension is rows
+	 * @return compact copy of the map
+	 */
+	public static GridMap of(CellContent[][] map) {
+		GridMap grid = new GridMap(map.length, map[0].length);
+		for (int y = 0; y < grid.rows; y++) {
+			for (int x = 0; x < grid.cols; x++) {
+				grid.set(x, y, map[x][y]);
+			}
+		}
+		return grid;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int size() {
+		return cols * rows;
+	}
+
+	public int index(int x, int y) {
+		return y * cols + x;
+	}
+
+	public int x(int index) {
+		return index % cols;
+	}
+
+	public int y(int index) {
+		return index / cols;
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && x < cols && y >= 0 && y < rows;
+	}
+
+	public CellContent get(int x, int y) {
+		return get(index(x, y));
+	}
+
+	public CellContent get(int index) {
+		return CONTENTS[ordinal(index)];
+	}
+
+	/**
+	 * @return ordinal of the content of the cell
+	 */
+	public int ordinal(int index) {
+		return (int) (bits[index >>> 5] >>> ((index & 31) << 1)) & 3;
+	}
+
+	/**
+	 * @return true if the cell is on the map and it is neither an obstacle nor a pit,
+	 * i.e. the deterministic planners may enter it
+	 */
+	public boolean safe(int x, int y) {
+		if (!contains(x, y)) {
+			return false;
+		}
+		int content = ordinal(index(x, y));
+		return content != OBSTACLE && content != PIT;
+	}
+
+	public void set(int x, int y, CellContent content) {
+		set(index(x, y), content);
+	}
+
+	public void set(int index, CellContent content) {
+		int shift = (index & 31) << 1;
+		bits[index >>> 5] = (bits[index >>> 5] & ~(3L << shift)) | ((long) content.ordinal() << shift);
+		modifications++;
+	}
+
+	/**
+	 * @return counter of the changes of the map, it changes whenever a cell is set
+	 */
+	public int getModifications() {
+		return modifications;
+	}
+
+	/**
+	 * @return index of the cell next to the given one in the direction of the action, -1 if it is outside of the map
+	 */
+	public int neighbour(int index, Action action) {
+		int x = x(index) + action.getDirection().x;
+		int y = y(index) + action.getDirection().y;
+		return contains(x, y) ? index(x, y) : -1;
+	}
+
+	/**
+	 * @return copy of the map in the legacy representation
+	 */
+	public CellContent[][] toArray() {
+		CellContent[][] map = new CellContent[cols][rows];
+		for (int y = 0; y < rows; y++) {
+			for (int x = 0; x < cols; x++) {
+				map[x][y] = get(x, y);
+			}
+		}
+		return map;
+	}
+
+	public GridMap copy() {
+		GridMap copy = new GridMap(cols, rows);
+		System.arraycopy(bits, 0, copy.bits, 0, bits.length);
+		return copy;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * cols + rows) + Arrays.hashCode(bits);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof GridMap)) {
+			return false;
+		}
+		GridMap other = (GridMap) obj;
+		return cols == other.cols && rows == other.rows && Arrays.equals(bits, other.bits);
+	}
+
+}
@@ -0,0 +1,449 @@
+package cz.cvut.fel.oi.pah.uncertainty.grid;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Model of the moves the agent actually makes when it performs an action.
+ *
+ * The cells of a map are divided into a few classes (e.g. by terrain), each class has its own
+ * distribution of moves for each action. A move is a displacement to one of the 8 neighbours
+ * of the cell; a move into an obstacle or out of the map leaves the agent in place.
+ *
+ * The model is queried only when it is compiled for a map (see {@link #compile(GridMap)}), the solvers
+ * and the simulators work on the flat tables of {@link Compiled}.
+ */
+public abstract class SlipModel {
+
+	/**
+	 * Number of the actions, the pairs of the compiled tables are indexed by class * ACTIONS + action.
+	 */
+	public static final int ACTIONS = 4;
+
+	/**
+	 * Moves of the perpendicular slip: the intended direction first, then the two perpendicular ones.
+	 */
+	static final Action[][] PERPENDICULAR = {
+		{ Action.NORTH, Action.EAST, Action.WEST },		// NORTH
+		{ Action.SOUTH, Action.EAST, Action.WEST },		// SOUTH
+		{ Action.EAST, Action.NORTH, Action.SOUTH },	// EAST
+		{ Action.WEST, Action.NORTH, Action.SOUTH }		// WEST
+	};
+
+	/**
+	 * The intended move with probability 0.8, each perpendicular one with probability 0.1.
+	 */
+	public static final Perpendicular STANDARD = new Perpendicular(0.8f, 0.1f, 0.1f);
+
+	/**
+	 * A displacement of the agent and its probability.
+	 */
+	public static class Move {
+
+		final int dx;
+		final int dy;
+		final float probability;
+
+		public Move(int dx, int dy, float probability) {
+			if (Math.abs(dx) > 1 || Math.abs(dy) > 1) {
+				throw new IllegalArgumentException("a move must end in the 8-neighbourhood");
+			}
+			this.dx = dx;
+			this.dy = dy;
+			this.probability = probability;
+		}
+
+		public int getDx() {
+			return dx;
+		}
+
+		public int getDy() {
+			return dy;
+		}
+
+		public float getProbability() {
+			return probability;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + dx + ", " + dy + "): " + probability;
+		}
+
+	}
+
+	/**
+	 * @return number of the classes of cells, at most 256
+	 */
+	public abstract int classes();
+
+	/**
+	 * @return class of the cell (x, y) of the map
+	 */
+	public abstract int classOf(GridMap map, int x, int y);
+
+	/**
+	 * @return moves of the action performed in a cell of the given class, the probabilities sum to 1
+	 */
+	public abstract Move[] moves(int cellClass, Action action);
+
+	/**
+	 * Compiles the model for the map into flat tables.
+	 */
+	public Compiled compile(GridMap map) {
+		int classes = classes();
+		if (classes < 1 || classes > 256) {
+			throw new IllegalArgumentException("number of classes must be between 1 and 256");
+		}
+
+		int[] offsets = new int[classes * ACTIONS + 1];
+		int size = 0;
+		for (int c = 0; c < classes; c++) {
+			for (Action action : Action.values()) {
+				size += moves(c, action).length;
+			}
+		}
+
+		int[] dx = new int[size];
+		int[] dy = new int[size];
+		float[] probabilities = new float[size];
+		int k = 0;
+		for (int c = 0; c < classes; c++) {
+			for (Action action : Action.values()) {
+				offsets[c * ACTIONS + action.ordinal()] = k;
+				for (Move move : moves(c, action)) {
+					dx[k] = move.dx;
+					dy[k] = move.dy;
+					probabilities[k] = move.probability;
+					k++;
+				}
+			}
+		}
+		offsets[classes * ACTIONS] = k;
+
+		byte[] cellClasses = null;
+		if (classes > 1) {
+			cellClasses = new byte[map.size()];
+			for (int y = 0; y < map.getRows(); y++) {
+				for (int x = 0; x < map.getCols(); x++) {
+					cellClasses[map.index(x, y)] = (byte) classOf(map, x, y);
+				}
+			}
+		}
+
+		return new Compiled(map, cellClasses, offsets, dx, dy, probabilities, samplingOrder(offsets, dx, dy));
+	}
+
+	/**
+	 * Order in which the moves of each pair are sampled, the one of the original simulators:
+	 * the first (intended) move, then the others in the row-major order of their displacements,
+	 * e.g. NORTH slips to the west before the east and EAST to the north before the south.
+	 * The order of the moves themselves is the order in which the solvers sum them, which differs.
+	 */
+	private static int[] samplingOrder(int[] offsets, final int[] dx, final int[] dy) {
+		Integer[] order = new Integer[dx.length];
+		for (int k = 0; k < order.length; k++) {
+			order[k] = k;
+		}
+		Comparator<Integer> rowMajor = new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int byRow = Integer.compare(dy[a], dy[b]);
+				return byRow != 0 ? byRow : Integer.compare(dx[a], dx[b]);
+			}
+		};
+		for (int pair = 0; pair + 1 < offsets.length; pair++) {
+			if (offsets[pair + 1] - offsets[pair] > 2) {
+				Arrays.sort(order, offsets[pair] + 1, offsets[pair + 1], rowMajor);
+			}
+		}
+		int[] sampling = new int[order.length];
+		for (int k = 0; k < order.length; k++) {
+			sampling[k] = order[k];
+		}
+		return sampling;
+	}
+
+	/**
+	 * Slip model compiled for a map: the moves of the pair (class c, action a) occupy the range
+	 * [offsets[c*4 + a], offsets[c*4 + a + 1]) of the dx, dy and probability arrays.
+	 */
+	public static class Compiled {
+
+		private final GridMap map;
+		private final byte[] cellClasses;
+
+		private final int[] offsets;
+		private final int[] dx;
+		private final int[] dy;
+		private final float[] probabilities;
+		// moves of each pair in the order they are sampled in
+		private final int[] sampling;
+
+		Compiled(GridMap map, byte[] cellClasses, int[] offsets, int[] dx, int[] dy, float[] probabilities, int[] sampling) {
+			this.map = map;
+			this.cellClasses = cellClasses;
+			this.offsets = offsets;
+			this.dx = dx;
+			this.dy = dy;
+			this.probabilities = probabilities;
+			this.sampling = sampling;
+		}
+
+		/**
+		 * @return number of the moves of all pairs
+		 */
+		public int size() {
+			return dx.length;
+		}
+
+		public int dx(int k) {
+			return dx[k];
+		}
+
+		public int dy(int k) {
+			return dy[k];
+		}
+
+		public float probability(int k) {
+			return probabilities[k];
+		}
+
+		public int begin(int cell, Action action) {
+			return offsets[pair(cell, action)];
+		}
+
+		public int end(int cell, Action action) {
+			return offsets[pair(cell, action) + 1];
+		}
+
+		private int pair(int cell, Action action) {
+			int cellClass = cellClasses != null ? cellClasses[cell] & 0xff : 0;
+			return cellClass * ACTIONS + action.ordinal();
+		}
+
+		/**
+		 * @return index of the cell the k-th move leads to from the cell, the cell itself
+		 * if the move ends in an obstacle or out of the map
+		 */
+		public int target(int cell, int k) {
+			int x = map.x(cell) + dx[k];
+			int y = map.y(cell) + dy[k];
+			if (!map.contains(x, y) || map.get(x, y) == CellContent.OBSTACLE) {
+				return cell;
+			}
+			return map.index(x, y);
+		}
+
+		/**
+		 * @return fingerprint of the moves and of the classes of the cells, equal for slip models
+		 * that move the agent the same way on the map
+		 */
+		public long fingerprint() {
+			long hash = 0xcbf29ce484222325L;
+			for (int k = 0; k < offsets.length; k++) {
+				hash = (hash ^ offsets[k]) * 0x100000001b3L;
+			}
+			for (int k = 0; k < dx.length; k++) {
+				hash = (hash ^ dx[k]) * 0x100000001b3L;
+				hash = (hash ^ dy[k]) * 0x100000001b3L;
+				hash = (hash ^ Float.floatToIntBits(probabilities[k])) * 0x100000001b3L;
+			}
+			if (cellClasses != null) {
+				for (int i = 0; i < cellClasses.length; i++) {
+					hash = (hash ^ cellClasses[i]) * 0x100000001b3L;
+				}
+			}
+			return hash;
+		}
+
+		/**
+		 * Samples a move of the action performed in the cell.
+		 * @param r uniformly distributed number from [0, 1)
+		 * @return index of the cell the agent ends in
+		 */
+		public int sample(int cell, Action action, double r) {
+			int end = end(cell, action);
+			for (int i = begin(cell, action); i < end; i++) {
+				r -= probabilities[sampling[i]];
+				if (r < 0) {
+					return target(cell, sampling[i]);
+				}
+			}
+			return target(cell, sampling[end - 1]);
+		}
+
+	}
+
+	/**
+	 * The intended move or one of the two perpendicular ones, the same in all cells.
+	 */
+	public static class Perpendicular extends SlipModel {
+
+		private final float intended;
+		private final float left;
+		private final float right;
+		private final Move[][] moves;
+
+		public Perpendicular(float intended, float left, float right) {
+			this.intended = intended;
+			this.left = left;
+			this.right = right;
+			this.moves = perpendicular(new float[] { intended, left, right });
+		}
+
+		@Override
+		public int classes() {
+			return 1;
+		}
+
+		@Override
+		public int classOf(GridMap map, int x, int y) {
+			return 0;
+		}
+
+		@Override
+		public Move[] moves(int cellClass, Action action) {
+			return moves[action.ordinal()];
+		}
+
+		/**
+		 * @return probability of the intended move
+		 */
+		public float getIntended() {
+			return intended;
+		}
+
+		/**
+		 * @return probability of the first perpendicular move (see {@link SlipModel#PERPENDICULAR})
+		 */
+		public float getLeft() {
+			return left;
+		}
+
+		/**
+		 * @return probability of the second perpendicular move
+		 */
+		public float getRight() {
+			return right;
+		}
+
+		@Override
+		public String toString() {
+			return "perpendicular[" + intended + ", " + left + ", " + right + "]";
+		}
+
+	}
+
+	/**
+	 * Perpendicular slip whose probability depends on the terrain of the cell,
+	 * e.g. ice slips more than grass.
+	 */
+	public static class Terrain extends SlipModel {
+
+		private final byte[] terrain;
+		private final float[] intended;
+		private final Move[][][] moves;
+
+		/**
+		 * @param terrain terrain class of each cell of the map in row-major order
+		 * @param intended probability of the intended move in each terrain class,
+		 * the rest is divided evenly between the perpendicular moves
+		 */
+		public Terrain(byte[] terrain, float[] intended) {
+			this.terrain = terrain;
+			this.intended = intended;
+			this.moves = new Move[intended.length][][];
+			for (int c = 0; c < intended.length; c++) {
+				float slip = (1 - intended[c]) / 2;
+				moves[c] = perpendicular(new float[] { intended[c], slip, slip });
+			}
+		}
+
+		@Override
+		public int classes() {
+			return intended.length;
+		}
+
+		@Override
+		public int classOf(GridMap map, int x, int y) {
+			return terrain[map.index(x, y)];
+		}
+
+		@Override
+		public Move[] moves(int cellClass, Action action) {
+			return moves[cellClass][action.ordinal()];
+		}
+
+		@Override
+		public String toString() {
+			return "terrain" + Arrays.toString(intended);
+		}
+
+	}
+
+	/**
+	 * The intended move or a drift to one of the two diagonal neighbours ahead of the agent.
+	 */
+	public static class Drift extends SlipModel {
+
+		private final float intended;
+		private final Move[][] moves;
+
+		/**
+		 * @param intended probability of the intended move, the rest is divided evenly between the drifts
+		 */
+		public Drift(float intended) {
+			this.intended = intended;
+			this.moves = new Move[ACTIONS][];
+			float drift = (1 - intended) / 2;
+			for (Action action : Action.values()) {
+				Action[] outcomes = PERPENDICULAR[action.ordinal()];
+				int x = action.getDirection().x;
+				int y = action.getDirection().y;
+				moves[action.ordinal()] = new Move[] {
+					new Move(x, y, intended),
+					new Move(x + outcomes[1].getDirection().x, y + outcomes[1].getDirection().y, drift),
+					new Move(x + outcomes[2].getDirection().x, y + outcomes[2].getDirection().y, drift)
+				};
+			}
+		}
+
+		@Override
+		public int classes() {
+			return 1;
+		}
+
+		@Override
+		public int classOf(GridMap map, int x, int y) {
+			return 0;
+		}
+
+		@Override
+		public Move[] moves(int cellClass, Action action) {
+			return moves[action.ordinal()];
+		}
+
+		@Override
+		public String toString() {
+			return "drift[" + intended + "]";
+		}
+
+	}
+
+	/**
+	 * @return moves of each action for the probabilities of the intended and of the two perpendicular moves
+	 */
+	private static Move[][] perpendicular(float[] probabilities) {
+		Move[][] moves = new Move[ACTIONS][];
+		for (Action action : Action.values()) {
+			Action[] outcomes = PERPENDICULAR[action.ordinal()];
+			moves[action.ordinal()] = new Move[outcomes.length];
+			for (int i = 0; i < outcomes.length; i++) {
+				moves[action.ordinal()][i] = new Move(outcomes[i].getDirection().x, outcomes[i].getDirection().y, probabilities[i]);
+			}
+		}
+		return moves;
+	}
+
+}
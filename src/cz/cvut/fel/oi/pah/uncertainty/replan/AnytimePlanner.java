@@ -0,0 +1,202 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Greedy best-first search (h = Manhattan distance) with a time budget per call.
+ *
+ * When the budget runs out before the goal is found, the planner returns the plan to the cell
+ * with the lowest h found so far, and the next call continues the same search: the open list,
+ * the search tree and the best cell survive between the calls. The search tree covers all cells
+ * it has reached, so when the robot ends up in such a cell (by following the partial plan or
+ * by a slip), the plan from it runs up the tree to the common ancestor with the target and down
+ * to the target. Only when the robot slips to a cell the search has not reached yet, the search
+ * restarts from there.
+ *
+ * The plans are not optimal, but unlike the hill-climbing the search never runs into a dead end:
+ * it fails only when the goal is not reachable at all.
+ */
+public class AnytimePlanner implements Planner {
+
+	private static final Action[] ACTIONS = Action.values();
+
+	/**
+	 * Number of expansions between two checks of the deadline.
+	 */
+	private static final int CHECK_INTERVAL = 64;
+
+	private final long budget;
+
+	private GridMap map;
+	private int goal = -1;
+
+	private CellHeap open;
+	private int[] parents;
+	private int[] depths;
+	private int[] stamps;
+	private int generation;
+
+	private int best;
+	private int bestH;
+
+	private long expansions;
+
+	/**
+	 * @param budget time each call may spend searching
+	 */
+	public AnytimePlanner(long budget, TimeUnit unit) {
+		this.budget = unit.toNanos(budget);
+	}
+
+	@Override
+	public List<Action> plan(GridMap map, int start, int goal) {
+		long deadline = System.nanoTime() + budget;
+
+		if (map != this.map) {
+			setMap(map);
+		}
+		if (goal != this.goal || !reached(start)) {
+			restart(start, goal);
+		}
+
+		int steps = 0;
+		while (!reached(goal) && !open.isEmpty()) {
+			expand(open.poll());
+			if (++steps % CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+				break;
+			}
+		}
+
+		if (!reached(goal) && best == start && !open.isEmpty() && open.top() == start) {
+			// the robot slipped to a cell of the open list that is the best one, expand it to move on
+			expand(open.poll());
+		}
+
+		if (reached(goal)) {
+			return extractSolution(start, goal);
+		}
+		if (open.isEmpty()) {
+			// the search is exhausted, the goal is not reachable
+			return new LinkedList<>();
+		}
+		// the robot stands in the best cell already, head for the most promising cell of the open list
+		return extractSolution(start, best != start ? best : open.top());
+	}
+
+	/**
+	 * @return number of the cells expanded since the planner was created
+	 */
+	public long getExpansions() {
+		return expansions;
+	}
+
+	private void setMap(GridMap map) {
+		this.map = map;
+		this.open = new CellHeap(map.size());
+		this.parents = new int[map.size()];
+		this.depths = new int[map.size()];
+		this.stamps = new int[map.size()];
+		this.generation = 0;
+		this.goal = -1;
+	}
+
+	private void restart(int start, int goal) {
+		this.goal = goal;
+		generation++;
+		open.clear();
+		best = -1;
+		bestH = Integer.MAX_VALUE;
+
+		stamps[start] = generation;
+		parents[start] = -1;
+		depths[start] = 0;
+		open.put(start, key(start));
+	}
+
+	/**
+	 * @return true if the search has reached the cell
+	 */
+	private boolean reached(int cell) {
+		return stamps[cell] == generation;
+	}
+
+	private void expand(int cell) {
+		expansions++;
+		int x = map.x(cell);
+		int y = map.y(cell);
+		for (Action op : ACTIONS) {
+			int sx = x + op.getDirection().x;
+			int sy = y + op.getDirection().y;
+			if (map.safe(sx, sy)) {
+				int s = map.index(sx, sy);
+				if (!reached(s)) {
+					stamps[s] = generation;
+					parents[s] = cell;
+					depths[s] = depths[cell] + 1;
+					open.put(s, key(s));
+					int h = h(s);
+					if (h < bestH) {
+						bestH = h;
+						best = s;
+					}
+				}
+			}
+		}
+	}
+
+	private long key(int cell) {
+		return ((long) h(cell) << 32) | depths[cell];
+	}
+
+	private int h(int cell) {
+		return Math.abs(map.x(cell) - map.x(goal)) + Math.abs(map.y(cell) - map.y(goal));
+	}
+
+	/**
+	 * @return actions leading over the search tree from one reached cell to another
+	 */
+	private List<Action> extractSolution(int from, int to) {
+		LinkedList<Action> up = new LinkedList<>();
+		LinkedList<Action> down = new LinkedList<>();
+		int a = from;
+		int b = to;
+		while (depths[a] > depths[b]) {
+			up.addLast(operator(a, parents[a]));
+			a = parents[a];
+		}
+		while (depths[b] > depths[a]) {
+			down.addFirst(operator(parents[b], b));
+			b = parents[b];
+		}
+		while (a != b) {
+			up.addLast(operator(a, parents[a]));
+			a = parents[a];
+			down.addFirst(operator(parents[b], b));
+			b = parents[b];
+		}
+		up.addAll(down);
+		return up;
+	}
+
+	private Action operator(int from, int to) {
+		int dx = map.x(to) - map.x(from);
+		int dy = map.y(to) - map.y(from);
+		for (Action op : ACTIONS) {
+			if (op.getDirection().x == dx && op.getDirection().y == dy) {
+				return op;
+			}
+		}
+		throw new IllegalArgumentException("cells " + from + " and " + to + " are not neighbours");
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + TimeUnit.NANOSECONDS.toMillis(budget) + " ms)";
+	}
+
+}
@@ -1,8 +0,0 @@
-package cz.cvut.fel.oi.pah.uncertainty.replan;
-
-enum CellContent {
-    EMPTY,
-    OBSTACLE,
-    GOLD,
-    PIT
-}
\ No newline at end of file
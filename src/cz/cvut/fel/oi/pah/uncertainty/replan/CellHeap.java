@@ -0,0 +1,144 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap of the cells of a map ordered by long keys.
+ *
+ * Each cell is in the heap at most once, its key can be changed and it can be removed
+ * in O(log n). The arrays are allocated once for the map, the heap allocates nothing afterwards.
+ */
+class CellHeap {
+
+	private final int[] heap;
+	private final long[] keys;
+	private final int[] positions;
+	private int size;
+
+	CellHeap(int cells) {
+		this.heap = new int[cells];
+		this.keys = new long[cells];
+		this.positions = new int[cells];
+		Arrays.fill(positions, -1);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int cell) {
+		return positions[cell] >= 0;
+	}
+
+	/**
+	 * @return the cell with the smallest key
+	 */
+	int top() {
+		return heap[0];
+	}
+
+	/**
+	 * @return the smallest key, Long.MAX_VALUE if the heap is empty
+	 */
+	long topKey() {
+		return size > 0 ? keys[heap[0]] : Long.MAX_VALUE;
+	}
+
+	long key(int cell) {
+		return keys[cell];
+	}
+
+	/**
+	 * Inserts the cell or changes its key if it is in the heap already.
+	 */
+	void put(int cell, long key) {
+		if (positions[cell] < 0) {
+			positions[cell] = size;
+			heap[size++] = cell;
+			keys[cell] = key;
+			up(positions[cell]);
+		} else if (key < keys[cell]) {
+			keys[cell] = key;
+			up(positions[cell]);
+		} else {
+			keys[cell] = key;
+			down(positions[cell]);
+		}
+	}
+
+	/**
+	 * @return the cell with the smallest key, removed from the heap
+	 */
+	int poll() {
+		int cell = heap[0];
+		remove(cell);
+		return cell;
+	}
+
+	void remove(int cell) {
+		int position = positions[cell];
+		if (position < 0) {
+			return;
+		}
+		positions[cell] = -1;
+		size--;
+		if (position < size) {
+			int last = heap[size];
+			heap[position] = last;
+			positions[last] = position;
+			up(position);
+			down(positions[last]);
+		}
+	}
+
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void up(int position) {
+		int cell = heap[position];
+		long key = keys[cell];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (keys[heap[parent]] <= key) {
+				break;
+			}
+			move(heap[parent], position);
+			position = parent;
+		}
+		move(cell, position);
+	}
+
+	private void down(int position) {
+		int cell = heap[position];
+		long key = keys[cell];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+				child++;
+			}
+			if (keys[heap[child]] >= key) {
+				break;
+			}
+			move(heap[child], position);
+			position = child;
+		}
+		move(cell, position);
+	}
+
+	private void move(int cell, int position) {
+		heap[position] = cell;
+		positions[cell] = position;
+	}
+
+}
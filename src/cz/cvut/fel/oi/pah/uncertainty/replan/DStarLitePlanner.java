@@ -0,0 +1,198 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * D* Lite (Koenig and Likhachev 2002) over the safe cells with unit move costs.
+ *
+ * The search runs backwards from the goal, g(s) estimates the distance of s to the goal.
+ * The search state survives between the calls, so when the robot slips the next call only
+ * adds the distance it moved to the key modifier km and continues the search until the new start
+ * is consistent, which usually takes no or only a few expansions because the cells around
+ * the old path have been expanded already. When a cell becomes blocked or free, {@link #update(int)}
+ * repairs only the part of the search that depends on it.
+ *
+ * The keys [min(g, rhs) + h + km; min(g, rhs)] are packed into a single long for the {@link CellHeap}.
+ */
+public class DStarLitePlanner implements Planner {
+
+	private static final Action[] ACTIONS = Action.values();
+	private static final int INFINITY = 1 << 29;
+
+	private GridMap map;
+	private int goal = -1;
+	private int start;
+	private int last;
+	private int km;
+
+	private int[] g;
+	private int[] rhs;
+	private CellHeap open;
+
+	private long expansions;
+
+	@Override
+	public List<Action> plan(GridMap map, int start, int goal) {
+		if (map != this.map || goal != this.goal) {
+			initialize(map, start, goal);
+		} else if (start != this.start) {
+			km += h(last, start);
+			last = start;
+			this.start = start;
+		}
+		computeShortestPath();
+		return extractPath();
+	}
+
+	/**
+	 * Repairs the search after the cell became blocked or free, e.g. when an obstacle is discovered.
+	 * @param cell index of the cell of the map whose content changed
+	 */
+	public void update(int cell) {
+		if (map == null) {
+			return;
+		}
+		km += h(last, start);
+		last = start;
+		updateVertex(cell);
+		int x = map.x(cell);
+		int y = map.y(cell);
+		for (Action op : ACTIONS) {
+			if (map.contains(x + op.getDirection().x, y + op.getDirection().y)) {
+				updateVertex(map.index(x + op.getDirection().x, y + op.getDirection().y));
+			}
+		}
+	}
+
+	/**
+	 * @return number of the cells expanded since the map was set
+	 */
+	public long getExpansions() {
+		return expansions;
+	}
+
+	private void initialize(GridMap map, int start, int goal) {
+		if (this.map == null || this.map.size() != map.size()) {
+			g = new int[map.size()];
+			rhs = new int[map.size()];
+			open = new CellHeap(map.size());
+		} else {
+			open.clear();
+		}
+		Arrays.fill(g, INFINITY);
+		Arrays.fill(rhs, INFINITY);
+
+		this.map = map;
+		this.goal = goal;
+		this.start = start;
+		this.last = start;
+		this.km = 0;
+		this.expansions = 0;
+
+		rhs[goal] = 0;
+		open.put(goal, key(goal));
+	}
+
+	private void computeShortestPath() {
+		while (!open.isEmpty() && (open.topKey() < key(start) || rhs[start] != g[start])) {
+			int u = open.top();
+			long oldKey = open.topKey();
+			long newKey = key(u);
+			if (oldKey < newKey) {
+				open.put(u, newKey);
+				continue;
+			}
+			expansions++;
+			if (g[u] > rhs[u]) {
+				g[u] = rhs[u];
+				open.remove(u);
+			} else {
+				g[u] = INFINITY;
+				updateVertex(u);
+			}
+			int x = map.x(u);
+			int y = map.y(u);
+			for (Action op : ACTIONS) {
+				if (map.safe(x + op.getDirection().x, y + op.getDirection().y)) {
+					updateVertex(map.index(x + op.getDirection().x, y + op.getDirection().y));
+				}
+			}
+		}
+	}
+
+	private void updateVertex(int u) {
+		if (u != goal) {
+			int best = INFINITY;
+			int x = map.x(u);
+			int y = map.y(u);
+			if (map.safe(x, y)) {
+				for (Action op : ACTIONS) {
+					if (map.safe(x + op.getDirection().x, y + op.getDirection().y)) {
+						best = Math.min(best, g[map.index(x + op.getDirection().x, y + op.getDirection().y)] + 1);
+					}
+				}
+			}
+			rhs[u] = Math.min(best, INFINITY);
+		}
+		if (g[u] != rhs[u]) {
+			open.put(u, key(u));
+		} else {
+			open.remove(u);
+		}
+	}
+
+	private long key(int s) {
+		int k2 = Math.min(g[s], rhs[s]);
+		int k1 = k2 + h(start, s) + km;
+		return ((long) k1 << 32) | k2;
+	}
+
+	private int h(int a, int b) {
+		return Math.abs(map.x(a) - map.x(b)) + Math.abs(map.y(a) - map.y(b));
+	}
+
+	/**
+	 * Follows the smallest g from the start down to the goal.
+	 * @return the path, empty if the goal is not reachable
+	 */
+	private List<Action> extractPath() {
+		LinkedList<Action> path = new LinkedList<>();
+		if (g[start] >= INFINITY) {
+			return path;
+		}
+		int s = start;
+		while (s != goal) {
+			int x = map.x(s);
+			int y = map.y(s);
+			Action best = null;
+			int bestG = INFINITY;
+			for (Action op : ACTIONS) {
+				if (map.safe(x + op.getDirection().x, y + op.getDirection().y)) {
+					int next = g[map.index(x + op.getDirection().x, y + op.getDirection().y)];
+					if (next < bestG) {
+						bestG = next;
+						best = op;
+					}
+				}
+			}
+			if (best == null || path.size() > map.size()) {
+				// the g-values on the way are not settled, no path can be read
+				return new LinkedList<>();
+			}
+			path.add(best);
+			s = map.index(x + best.getDirection().x, y + best.getDirection().y);
+		}
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+
+}
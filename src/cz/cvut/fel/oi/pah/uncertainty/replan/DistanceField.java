@@ -0,0 +1,99 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import java.util.Arrays;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Distances of all cells of a map to the goal over safe cells (see {@link GridMap#safe(int, int)}),
+ * computed by a single breadth-first search backwards from the goal.
+ *
+ * Together with the distances the search stores for each cell the action that moves to a neighbour
+ * closer to the goal, so following the field from any cell is one array lookup per step,
+ * wherever the robot slips to.
+ */
+class DistanceField {
+
+	static final int UNREACHABLE = -1;
+
+	private static final Action[] ACTIONS = Action.values();
+
+	private final GridMap map;
+	private final int goal;
+	private final int[] distances;
+	private final byte[] actions;
+
+	DistanceField(GridMap map, int goal) {
+		this.map = map;
+		this.goal = goal;
+		this.distances = new int[map.size()];
+		this.actions = new byte[map.size()];
+		Arrays.fill(distances, UNREACHABLE);
+		Arrays.fill(actions, (byte) -1);
+
+		Action[] opposite = new Action[ACTIONS.length];
+		for (Action op : ACTIONS) {
+			opposite[op.ordinal()] = opposite(op);
+		}
+
+		int[] queue = new int[map.size()];
+		int head = 0;
+		int tail = 0;
+		distances[goal] = 0;
+		queue[tail++] = goal;
+
+		while (head < tail) {
+			int cell = queue[head++];
+			int x = map.x(cell);
+			int y = map.y(cell);
+			for (Action op : ACTIONS) {
+				int sx = x + op.getDirection().x;
+				int sy = y + op.getDirection().y;
+				if (map.safe(sx, sy)) {
+					int s = map.index(sx, sy);
+					if (distances[s] == UNREACHABLE) {
+						distances[s] = distances[cell] + 1;
+						// the robot moves from s back to the cell
+						actions[s] = (byte) opposite[op.ordinal()].ordinal();
+						queue[tail++] = s;
+					}
+				}
+			}
+		}
+	}
+
+	private static Action opposite(Action op) {
+		for (Action other : ACTIONS) {
+			if (other.getDirection().x == -op.getDirection().x && other.getDirection().y == -op.getDirection().y) {
+				return other;
+			}
+		}
+		throw new IllegalStateException("no action opposite to " + op);
+	}
+
+	GridMap getMap() {
+		return map;
+	}
+
+	int getGoal() {
+		return goal;
+	}
+
+	/**
+	 * @return number of moves from the cell to the goal, {@link #UNREACHABLE} if the goal cannot be reached
+	 */
+	int distance(int cell) {
+		return distances[cell];
+	}
+
+	/**
+	 * @return action that moves from the cell one step closer to the goal,
+	 * null in the goal and in the cells the goal cannot be reached from
+	 */
+	Action action(int cell) {
+		byte action = actions[cell];
+		return action >= 0 ? ACTIONS[action] : null;
+	}
+
+}
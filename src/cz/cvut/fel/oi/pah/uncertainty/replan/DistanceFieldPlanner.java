@@ -0,0 +1,117 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Plans along a {@link DistanceField} to the goal, which is computed once per map and goal.
+ *
+ * The plan is a shortest path over the safe cells. It is not materialised: the plan is a view
+ * of the field from the start and each action is looked up when the agent takes it, so when
+ * the robot slips, the next plan takes constant time without any search.
+ */
+public class DistanceFieldPlanner implements Planner {
+
+	private DistanceField field;
+
+	@Override
+	public List<Action> plan(GridMap map, int start, int goal) {
+		if (field == null || field.getMap() != map || field.getGoal() != goal) {
+			field = new DistanceField(map, goal);
+		}
+		return new Path(field, start);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * Actions along the field from a cell to the goal, empty if the goal cannot be reached.
+	 * Removing the first action moves the start of the path to the next cell, other actions cannot be removed.
+	 */
+	private static class Path extends AbstractList<Action> {
+
+		private final DistanceField field;
+		private int cell;
+
+		Path(DistanceField field, int start) {
+			this.field = field;
+			this.cell = start;
+		}
+
+		/**
+		 * @return the cell the action of the field moves to from the cell n
+		 */
+		private int next(int n) {
+			GridMap map = field.getMap();
+			Action action = field.action(n);
+			return map.index(map.x(n) + action.getDirection().x, map.y(n) + action.getDirection().y);
+		}
+
+		@Override
+		public int size() {
+			int distance = field.distance(cell);
+			return distance == DistanceField.UNREACHABLE ? 0 : distance;
+		}
+
+		@Override
+		public Action get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+			}
+			int n = cell;
+			for (int i = 0; i < index; i++) {
+				n = next(n);
+			}
+			return field.action(n);
+		}
+
+		@Override
+		public Action remove(int index) {
+			if (index != 0) {
+				throw new UnsupportedOperationException("only the first action can be removed");
+			}
+			Action action = get(0);
+			cell = next(cell);
+			modCount++;
+			return action;
+		}
+
+		@Override
+		public Iterator<Action> iterator() {
+			return new Iterator<Action>() {
+
+				private int n = cell;
+
+				@Override
+				public boolean hasNext() {
+					return field.action(n) != null;
+				}
+
+				@Override
+				public Action next() {
+					Action action = field.action(n);
+					if (action == null) {
+						throw new NoSuchElementException();
+					}
+					n = Path.this.next(n);
+					return action;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+	}
+
+}
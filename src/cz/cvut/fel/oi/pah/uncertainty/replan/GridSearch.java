@@ -0,0 +1,121 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Breadth-first search of the enforced hill-climbing of {@link ReplanAgent} over cell indices.
+ *
+ * The search allocates nothing per expansion: the queue is an int array (each cell is enqueued
+ * at most once, so it never needs more than one slot per cell), the closed set is an array of
+ * generation stamps that is cleared by starting a new generation, and the search tree is an array
+ * of parent cells. All arrays are allocated once per map.
+ */
+class GridSearch {
+
+	private static final Action[] ACTIONS = Action.values();
+
+	private final GridMap map;
+
+	private final int[] queue;
+	private final int[] stamps;
+	private final int[] parents;
+	private int generation;
+
+	GridSearch(GridMap map) {
+		this.map = map;
+		this.queue = new int[map.size()];
+		this.stamps = new int[map.size()];
+		this.parents = new int[map.size()];
+	}
+
+	GridMap getMap() {
+		return map;
+	}
+
+	/**
+	 * @return Manhattan distance of the cell to the goal cell
+	 */
+	int h(int cell, int goal) {
+		return Math.abs(map.x(cell) - map.x(goal)) + Math.abs(map.y(cell) - map.y(goal));
+	}
+
+	/**
+	 * Breadth-first search from the init cell for the closest cell with a lower heuristic value.
+	 * The successors of a cell are generated in the order of {@link Action#values()}.
+	 * @return the cell found, -1 if no such cell is reachable over safe cells
+	 */
+	int improve(int init, int goal) {
+		int hInit = h(init, goal);
+		int head = 0;
+		int tail = 0;
+
+		nextGeneration();
+		stamps[init] = generation;
+		parents[init] = -1;
+		queue[tail++] = init;
+
+		while (head < tail) {
+			int cell = queue[head++];
+			if (h(cell, goal) < hInit) {
+				return cell;
+			}
+			int x = map.x(cell);
+			int y = map.y(cell);
+			for (Action op : ACTIONS) {
+				int sx = x + op.getDirection().x;
+				int sy = y + op.getDirection().y;
+				if (map.safe(sx, sy)) {
+					int s = map.index(sx, sy);
+					if (stamps[s] != generation) {
+						stamps[s] = generation;
+						parents[s] = cell;
+						queue[tail++] = s;
+					}
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return actions leading from the root of the last search to the cell
+	 */
+	List<Action> extractSolution(int cell) {
+		LinkedList<Action> solution = new LinkedList<>();
+		while (parents[cell] >= 0) {
+			solution.addFirst(operator(parents[cell], cell));
+			cell = parents[cell];
+		}
+		return solution;
+	}
+
+	/**
+	 * @return the action that moves from a cell to its neighbour
+	 */
+	Action operator(int from, int to) {
+		int dx = map.x(to) - map.x(from);
+		int dy = map.y(to) - map.y(from);
+		for (Action op : ACTIONS) {
+			if (op.getDirection().x == dx && op.getDirection().y == dy) {
+				return op;
+			}
+		}
+		throw new IllegalArgumentException("cells " + from + " and " + to + " are not neighbours");
+	}
+
+	private void nextGeneration() {
+		generation++;
+		if (generation == Integer.MAX_VALUE) {
+			// the stamps would wrap around
+			Arrays.fill(stamps, 0);
+			generation = 1;
+		}
+	}
+
+}
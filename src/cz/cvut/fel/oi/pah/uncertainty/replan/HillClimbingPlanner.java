@@ -0,0 +1,41 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Enforced hill-climbing with h = Manhattan distance: breadth-first searches for a closer cell
+ * are chained until the goal is reached. Fails (with an empty plan) on a dead end.
+ */
+public class HillClimbingPlanner implements Planner {
+
+	private GridSearch search;
+
+	@Override
+	public List<Action> plan(GridMap map, int start, int goal) {
+		if (search == null || search.getMap() != map) {
+			search = new GridSearch(map);
+		}
+		int n = start;
+		List<Action> solution = new LinkedList<>();
+		while (n != goal) {
+			int improved = search.improve(n, goal);
+			if (improved < 0) {
+				// dead end of the hill-climbing
+				return new LinkedList<>();
+			}
+			solution.addAll(search.extractSolution(improved));
+			n = improved;
+		}
+		return solution;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+
+}
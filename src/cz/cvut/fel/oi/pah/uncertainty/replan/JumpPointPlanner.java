@@ -0,0 +1,293 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * A* with jump point search (Harabor and Grastien 2011) adapted to the 4-connected grid
+ * of the robot, unit move costs over the safe cells.
+ *
+ * Among the shortest paths only the canonical ones are searched: a path turns from a horizontal
+ * move to a vertical one only right past the corner of a blocked cell (a forced neighbour),
+ * any other turn can be moved earlier without making the path longer. So a horizontal jump runs
+ * until the goal, a wall or a cell whose vertical neighbour is free while the one behind it is blocked,
+ * and a vertical jump stops at the first cell a horizontal jump from which finds a jump point.
+ * Only the cells the jumps stop at are put on the open list, the plan is expanded back into unit moves.
+ *
+ * With the JPS+ table the jumps are not scanned cell by cell: for each cell and direction the table
+ * holds the distance to the next jump point, or minus the number of cells to the wall if there is none,
+ * computed once per map. The goal is found by checking whether the jump crosses its row or column.
+ */
+public class JumpPointPlanner implements Planner {
+
+	private static final Action[] ACTIONS = Action.values();
+
+	private final boolean precompute;
+
+	private GridMap map;
+	private int[] jumps;
+
+	private CellHeap open;
+	private int[] g;
+	private int[] parents;
+	private int[] stamps;
+	private int generation;
+
+	private int goalX;
+	private int goalY;
+	private long expansions;
+
+	/**
+	 * Planner that scans the jumps online.
+	 */
+	public JumpPointPlanner() {
+		this(false);
+	}
+
+	/**
+	 * @param precompute true to compute the JPS+ table of jump distances once per map
+	 */
+	public JumpPointPlanner(boolean precompute) {
+		this.precompute = precompute;
+	}
+
+	@Override
+	public List<Action> plan(GridMap map, int start, int goal) {
+		if (map != this.map) {
+			setMap(map);
+		}
+		goalX = map.x(goal);
+		goalY = map.y(goal);
+
+		generation++;
+		open.clear();
+		open(start, -1, 0);
+
+		while (!open.isEmpty()) {
+			int n = open.poll();
+			if (n == goal) {
+				return extractSolution(start, goal);
+			}
+			expansions++;
+
+			int x = map.x(n);
+			int y = map.y(n);
+			int parent = parents[n];
+			for (Action op : ACTIONS) {
+				if (parent >= 0 && !natural(x, y, map.x(parent), map.y(parent), op)) {
+					continue;
+				}
+				int jump = precompute ? jumpPlus(x, y, op) : jump(x, y, op);
+				if (jump >= 0) {
+					int cost = Math.abs(map.x(jump) - x) + Math.abs(map.y(jump) - y);
+					open(jump, n, g[n] + cost);
+				}
+			}
+		}
+		return new LinkedList<>();
+	}
+
+	/**
+	 * @return number of the cells expanded since the planner was created
+	 */
+	public long getExpansions() {
+		return expansions;
+	}
+
+	private void setMap(GridMap map) {
+		this.map = map;
+		this.open = new CellHeap(map.size());
+		this.g = new int[map.size()];
+		this.parents = new int[map.size()];
+		this.stamps = new int[map.size()];
+		this.generation = 0;
+		this.jumps = precompute ? table(map) : null;
+	}
+
+	private void open(int cell, int parent, int cost) {
+		if (stamps[cell] == generation && g[cell] <= cost) {
+			return;
+		}
+		if (stamps[cell] == generation && !open.contains(cell)) {
+			// closed already, with a consistent heuristic it cannot improve
+			return;
+		}
+		stamps[cell] = generation;
+		g[cell] = cost;
+		parents[cell] = parent;
+		int f = cost + Math.abs(map.x(cell) - goalX) + Math.abs(map.y(cell) - goalY);
+		// prefer the deeper cell among the ones with the same f
+		open.put(cell, ((long) f << 32) | (Integer.MAX_VALUE - cost));
+	}
+
+	/**
+	 * @return true if the move continues a canonical path that reached (x, y) from the parent:
+	 * after a vertical move straight on or to both sides, after a horizontal move straight on
+	 * or towards a forced neighbour
+	 */
+	private boolean natural(int x, int y, int parentX, int parentY, Action op) {
+		int dx = Integer.signum(x - parentX);
+		int dy = Integer.signum(y - parentY);
+		if (dx == 0) {
+			return op.getDirection().y != -dy;
+		}
+		if (op.getDirection().x == dx) {
+			return true;
+		}
+		return op.getDirection().x == 0 && forced(x, y, dx, op.getDirection().y);
+	}
+
+	/**
+	 * @return true if the vertical neighbour (x, y + dy) of a cell entered by a horizontal move in the direction dx
+	 * is free while the one behind it is blocked
+	 */
+	private boolean forced(int x, int y, int dx, int dy) {
+		return map.safe(x, y + dy) && !map.safe(x - dx, y + dy);
+	}
+
+	/**
+	 * @return the jump point reached from (x, y) by the move, -1 if there is none
+	 */
+	private int jump(int x, int y, Action op) {
+		int dx = op.getDirection().x;
+		int dy = op.getDirection().y;
+		while (true) {
+			x += dx;
+			y += dy;
+			if (!map.safe(x, y)) {
+				return -1;
+			}
+			if (x == goalX && y == goalY) {
+				return map.index(x, y);
+			}
+			if (dy == 0) {
+				if (forced(x, y, dx, -1) || forced(x, y, dx, 1)) {
+					return map.index(x, y);
+				}
+			} else if (jump(x, y, Action.EAST) >= 0 || jump(x, y, Action.WEST) >= 0) {
+				return map.index(x, y);
+			}
+		}
+	}
+
+	/**
+	 * The same jump as {@link #jump(int, int, Action)} read from the JPS+ table.
+	 */
+	private int jumpPlus(int x, int y, Action op) {
+		int distance = jumps[map.index(x, y) * ACTIONS.length + op.ordinal()];
+		int reach = Math.abs(distance);
+		if (op.getDirection().y == 0) {
+			// the goal in the row within the reach of the jump
+			int steps = (goalX - x) * op.getDirection().x;
+			if (goalY == y && steps > 0 && steps <= reach) {
+				return map.index(goalX, goalY);
+			}
+		} else {
+			// the jump crosses the row of the goal, the horizontal jumps from there may find it
+			int steps = (goalY - y) * op.getDirection().y;
+			if (steps > 0 && steps <= reach && (distance < 0 || steps < distance)) {
+				return map.index(x, goalY);
+			}
+		}
+		return distance > 0 ? map.index(x + distance * op.getDirection().x, y + distance * op.getDirection().y) : -1;
+	}
+
+	/**
+	 * @return JPS+ table: for cell c and action a the entry c * 4 + a holds the distance to the jump point
+	 * in the direction of the action, or minus the number of safe cells before the wall
+	 */
+	private static int[] table(GridMap map) {
+		int cols = map.getCols();
+		int rows = map.getRows();
+		int[] jumps = new int[map.size() * ACTIONS.length];
+		int east = Action.EAST.ordinal();
+		int west = Action.WEST.ordinal();
+		int north = Action.NORTH.ordinal();
+		int south = Action.SOUTH.ordinal();
+
+		for (int y = 0; y < rows; y++) {
+			for (int x = cols - 1; x >= 0; x--) {
+				jumps[map.index(x, y) * 4 + east] = horizontal(map, jumps, x, y, 1, east);
+			}
+			for (int x = 0; x < cols; x++) {
+				jumps[map.index(x, y) * 4 + west] = horizontal(map, jumps, x, y, -1, west);
+			}
+		}
+		for (int x = 0; x < cols; x++) {
+			for (int y = 0; y < rows; y++) {
+				jumps[map.index(x, y) * 4 + north] = vertical(map, jumps, x, y, -1, north);
+			}
+			for (int y = rows - 1; y >= 0; y--) {
+				jumps[map.index(x, y) * 4 + south] = vertical(map, jumps, x, y, 1, south);
+			}
+		}
+		return jumps;
+	}
+
+	private static int horizontal(GridMap map, int[] jumps, int x, int y, int dx, int action) {
+		int nx = x + dx;
+		if (!map.safe(nx, y)) {
+			return 0;
+		}
+		if (map.safe(nx, y - 1) && !map.safe(x, y - 1) || map.safe(nx, y + 1) && !map.safe(x, y + 1)) {
+			return 1;
+		}
+		return extend(jumps[map.index(nx, y) * 4 + action]);
+	}
+
+	private static int vertical(GridMap map, int[] jumps, int x, int y, int dy, int action) {
+		int ny = y + dy;
+		if (!map.safe(x, ny)) {
+			return 0;
+		}
+		int next = map.index(x, ny) * 4;
+		if (jumps[next + Action.EAST.ordinal()] > 0 || jumps[next + Action.WEST.ordinal()] > 0) {
+			return 1;
+		}
+		return extend(jumps[next + action]);
+	}
+
+	/**
+	 * @return the entry of a cell one step further from the jump point or the wall than the given entry
+	 */
+	private static int extend(int distance) {
+		return distance > 0 ? distance + 1 : distance - 1;
+	}
+
+	/**
+	 * @return unit moves along the jump points from the start to the goal
+	 */
+	private List<Action> extractSolution(int start, int goal) {
+		LinkedList<Action> solution = new LinkedList<>();
+		int n = goal;
+		while (n != start) {
+			int parent = parents[n];
+			int dx = map.x(n) - map.x(parent);
+			int dy = map.y(n) - map.y(parent);
+			Action op = direction(Integer.signum(dx), Integer.signum(dy));
+			for (int i = Math.abs(dx) + Math.abs(dy); i > 0; i--) {
+				solution.addFirst(op);
+			}
+			n = parent;
+		}
+		return solution;
+	}
+
+	private static Action direction(int dx, int dy) {
+		for (Action op : ACTIONS) {
+			if (op.getDirection().x == dx && op.getDirection().y == dy) {
+				return op;
+			}
+		}
+		throw new IllegalArgumentException("not a unit move: " + dx + ", " + dy);
+	}
+
+	@Override
+	public String toString() {
+		return precompute ? getClass().getSimpleName() + "(JPS+)" : getClass().getSimpleName();
+	}
+
+}
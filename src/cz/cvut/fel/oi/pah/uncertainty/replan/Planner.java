@@ -0,0 +1,26 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import java.util.List;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Deterministic planner of {@link ReplanAgent}: plans unit moves over the safe cells of the map
+ * (neither obstacles nor pits) as if the actions never slipped.
+ *
+ * The agent calls the planner again whenever the robot ends up somewhere else than expected,
+ * always with the same map and goal during a run, so a planner may keep its search state
+ * between the calls.
+ */
+public interface Planner {
+
+	/**
+	 * @param map the map of the environment
+	 * @param start index of the cell of the robot
+	 * @param goal index of the goal cell
+	 * @return actions leading from the start to the goal, empty if the planner found no plan
+	 */
+	List<Action> plan(GridMap map, int start, int goal);
+
+}
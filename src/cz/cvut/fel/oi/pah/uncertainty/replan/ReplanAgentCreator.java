@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import javax.vecmath.Point2d;
 
@@ -16,6 +17,10 @@ import tt.euclid2i.vis.RegionsLayer.RegionsProvider;
 import cz.agents.alite.vis.VisManager;
 import cz.agents.alite.vis.VisManager.SceneParams;
 import cz.agents.alite.vis.layer.common.ColorLayer;
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
 
 public class ReplanAgentCreator {
 
@@ -24,11 +29,22 @@ public class ReplanAgentCreator {
 	final static int ROWS = 20;
 	final static double OBST_RATIO = 0.2;
 	final static int STEPS = 200;
+	// time budget of a call of the anytime planner in ms
+	final static long PLANNING_BUDGET = 1;
 
-	CellContent[][] map; // First dimension is columns, second dimension is rows
+	GridMap map;
+	SlipModel.Compiled slip;
 	int x;
 	int y;
 
+	final SlipModel slipModel;
+	final String agent;
+
+	ReplanAgentCreator(SlipModel slipModel, String agent) {
+		this.slipModel = slipModel;
+		this.agent = agent;
+	}
+
     private void initVisualization() {
         VisManager.setInitParam("Trajectory Tools Vis", 1024, 768, 200, 200);
         VisManager.setSceneParam(new SceneParams() {
@@ -79,7 +95,7 @@ public class ReplanAgentCreator {
 				Collection<Rectangle> regions = new LinkedList<Rectangle>();
 		    	for (int x=0; x < COLS; x++) {
 		    		for (int y=0; y < ROWS; y++){
-		    			if (map[x][y] == CellContent.OBSTACLE) {
+		    			if (map.get(x, y) == CellContent.OBSTACLE) {
 		    				regions.add(new Rectangle(
 		    						new Point(x*CELLSIZE - CELLSIZE/2, y*CELLSIZE - CELLSIZE/2),
 		    						new Point(x*CELLSIZE + CELLSIZE/2, y*CELLSIZE + CELLSIZE/2)
@@ -100,7 +116,7 @@ public class ReplanAgentCreator {
 				Collection<Circle> regions = new LinkedList<Circle>();
 				for (int x=0; x < COLS; x++) {
 		    		for (int y=0; y < ROWS; y++){
-		    			if (map[x][y] == CellContent.GOLD) {
+		    			if (map.get(x, y) == CellContent.GOLD) {
 		    				regions.add(new Circle(new Point(x*CELLSIZE, y*CELLSIZE), CELLSIZE/2));
 		    			}
 		    		}
@@ -117,7 +133,7 @@ public class ReplanAgentCreator {
 				Collection<Circle> regions = new LinkedList<Circle>();
 				for (int x=0; x < COLS; x++) {
 		    		for (int y=0; y < ROWS; y++){
-		    			if (map[x][y] == CellContent.PIT) {
+		    			if (map.get(x, y) == CellContent.PIT) {
 		    				regions.add(new Circle(new Point(x*CELLSIZE, y*CELLSIZE), CELLSIZE/2));
 		    			}
 
@@ -136,7 +152,8 @@ public class ReplanAgentCreator {
 
     	for (int i=0; i<RUNS; i++) {
     		generateMap(new Random(2));
-	    	boolean success = simulate(new ReplanAgent(), new Random(i), 100); // edit time in ms
+    		slip = slipModel.compile(map);
+	    	boolean success = simulate(createAgent(agent), new Random(i), 100); // edit time in ms
 	    	if (success) {
 	    		successCount++;
 	    	}
@@ -153,12 +170,12 @@ public class ReplanAgentCreator {
     		Action action = agent.nextStep(x,y,map);
     		updatePosition(action, rnd);
 
-    		if (map[x][y] == CellContent.GOLD) {
+    		if (map.get(x, y) == CellContent.GOLD) {
     			System.out.println("Your robot found gold.");
     			return true;
     		}
 
-    		if (map[x][y] == CellContent.PIT) {
+    		if (map.get(x, y) == CellContent.PIT) {
     			System.out.println("Your robot fell into a pit.");
     			return false;
     		}
@@ -173,79 +190,25 @@ public class ReplanAgentCreator {
 
 
 	private void updatePosition(Action action, Random rnd) {
-		int newX = x;
-		int newY = y;
-		if (action == Action.NORTH) {
-			double r = rnd.nextDouble();
-			if (r < 0.8)
-				newY -= 1;
-			else if (r < 0.9) {
-				newX -= 1;
-			} else {
-				newX += 1;
-			}
-		}
-
-		if (action == Action.SOUTH) {
-			double r = rnd.nextDouble();
-			if (r < 0.8)
-				newY += 1;
-			else if (r < 0.9) {
-				newX -= 1;
-			} else {
-				newX += 1;
-			}
-		}
-
-		if (action == Action.EAST) {
-			double r = rnd.nextDouble();
-			if (r < 0.8)
-				newX += 1;
-			else if (r < 0.9) {
-				newY -= 1;
-			} else {
-				newY += 1;
-			}
-		}
-
-		if (action == Action.WEST) {
-			double r = rnd.nextDouble();
-			if (r < 0.8)
-				newX -= 1;
-			else if (r < 0.9) {
-				newX -= 1;
-			} else {
-				newX += 1;
-			}
-		}
-
-		if (newX >= 0 && newX < COLS && newY >= 0 && newY < ROWS && map[newX][newY] != CellContent.OBSTACLE) {
-			x = newX;
-			y = newY;
-		}
-
+		int cell = slip.sample(map.index(x, y), action, rnd.nextDouble());
+		x = map.x(cell);
+		y = map.y(cell);
 	}
 
 	private void generateMap(Random rnd) {
     	x = 0;
     	y = 0;
 
-    	map = new CellContent[COLS][ROWS];
-
-    	for (int x=0; x < COLS; x++) {
-    		for (int y=0; y < ROWS; y++){
-    			map[x][y] = CellContent.EMPTY;
-    		}
-    	}
+    	map = new GridMap(COLS, ROWS);
 
-    	map[13][12] = CellContent.GOLD;
-    	//map[9][5] = CellContent.PIT;
+    	map.set(13, 12, CellContent.GOLD);
+    	//map.set(9, 5, CellContent.PIT);
 
     	for (int x=0; x < COLS; x++) {
     		for (int y=0; y < ROWS; y++){
-    			if (map[x][y] == CellContent.EMPTY) {
+    			if (map.get(x, y) == CellContent.EMPTY) {
 	    			if (rnd.nextDouble() < OBST_RATIO) {
-	    				map[x][y] = CellContent.OBSTACLE;
+	    				map.set(x, y, CellContent.OBSTACLE);
 	    			}
     			}
     		}
@@ -253,8 +216,32 @@ public class ReplanAgentCreator {
 
 	}
 
+	private static SlipModel createSlipModel(String name) {
+		switch (name) {
+			case "standard":	return SlipModel.STANDARD;
+			case "drift":	return new SlipModel.Drift(0.8f);
+			default:	throw new IllegalArgumentException("unknown slip model: " + name);
+		}
+	}
+
+	private static ReplanAgent createAgent(String name) {
+		switch (name) {
+			case "ehc":	return new ReplanAgent();
+			case "dstar":	return new ReplanAgent(new DStarLitePlanner());
+			case "field":	return new ReplanAgent(new DistanceFieldPlanner());
+			case "jps":	return new ReplanAgent(new JumpPointPlanner());
+			case "jps+":	return new ReplanAgent(new JumpPointPlanner(true));
+			case "anytime":	return new ReplanAgent(new AnytimePlanner(PLANNING_BUDGET, TimeUnit.MILLISECONDS));
+			default:	throw new IllegalArgumentException("unknown planner: " + name);
+		}
+	}
+
+	/**
+	 * @param args optional name of the slip model: standard (default), drift,
+	 * and optional name of the planner: ehc (default), dstar, field, jps, jps+, anytime
+	 */
 	public static void main(String[] args) {
-        new ReplanAgentCreator().create();
+        new ReplanAgentCreator(createSlipModel(args.length > 0 ? args[0] : "standard"), args.length > 1 ? args[1] : "ehc").create();
     }
 
 
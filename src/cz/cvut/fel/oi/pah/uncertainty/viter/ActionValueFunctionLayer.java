@@ -10,6 +10,7 @@ import javax.vecmath.Tuple2i;
 import cz.agents.alite.vis.Vis;
 import cz.agents.alite.vis.layer.VisLayer;
 import cz.agents.alite.vis.layer.terminal.TerminalLayer;
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
 
 
 public class ActionValueFunctionLayer extends TerminalLayer {
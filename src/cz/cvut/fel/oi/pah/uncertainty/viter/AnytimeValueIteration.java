@@ -0,0 +1,206 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Value iteration running in a background thread that publishes a snapshot of its solution
+ * after each sweep, so that a policy is available long before the value function converges.
+ *
+ * The sweeps are the ones of {@link ValueIterationSolver}. Each snapshot holds copies of the values
+ * and of the policy, so it stays consistent while the next sweeps are computed.
+ */
+public class AnytimeValueIteration implements Runnable {
+
+    /**
+     * Solution published after a sweep together with the residual of that sweep.
+     */
+    public static class Snapshot {
+
+        private final Solution solution;
+        private final double residual;
+        private final boolean converged;
+
+        Snapshot(Solution solution, double residual, boolean converged) {
+            this.solution = solution;
+            this.residual = residual;
+            this.converged = converged;
+        }
+
+        public Solution getSolution() {
+            return solution;
+        }
+
+        /**
+         * @return max_s |V_i(s) - V_{i-1}(s)| of the sweep the snapshot was published after
+         */
+        public double getResidual() {
+            return residual;
+        }
+
+        /**
+         * @return bound on the loss of the policy, max_s V*(s) - V^pi(s) <= 2 gamma residual / (1 - gamma)
+         * (Williams and Baird 1993)
+         */
+        public double getBound() {
+            return 2 * Solver.GAMMA * residual / (1 - Solver.GAMMA);
+        }
+
+        /**
+         * @return true if the residual dropped below the threshold of the other solvers
+         */
+        public boolean isConverged() {
+            return converged;
+        }
+
+    }
+
+    private final GridMap map;
+    private final int modifications;
+    private final GridMap contents;
+    private final SlipModel slipModel;
+    private final CountDownLatch published = new CountDownLatch(1);
+
+    private volatile Snapshot latest;
+    private volatile boolean cancelled;
+
+    private AnytimeValueIteration(GridMap map) {
+        this.map = map;
+        this.modifications = map.getModifications();
+        // the background thread solves a copy, later changes of the map do not affect it
+        this.contents = map.copy();
+        this.slipModel = WorldModel.getSlipModel();
+    }
+
+    /**
+     * Starts solving the map in a background (daemon) thread.
+     * @param map the map of the environment, the contents it has now are solved
+     */
+    public static AnytimeValueIteration start(GridMap map) {
+        AnytimeValueIteration solver = new AnytimeValueIteration(map);
+        Thread thread = new Thread(solver, "anytime-value-iteration");
+        thread.setDaemon(true);
+        thread.start();
+        return solver;
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+
+    /**
+     * @return true if this solves the given map with its current contents,
+     * false for another map or one modified in place since the solving started
+     */
+    public boolean solves(GridMap map) {
+        return this.map == map && modifications == map.getModifications();
+    }
+
+    /**
+     * @return the snapshot published last, null if the first sweep has not finished yet
+     */
+    public Snapshot getLatest() {
+        return latest;
+    }
+
+    /**
+     * Waits for the first snapshot at most the given time.
+     * @return the snapshot published last, null if there is none before the deadline
+     */
+    public Snapshot await(long timeout, TimeUnit unit) {
+        if (latest == null) {
+            try {
+                published.await(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Stops the sweeps, the snapshot published last stays available.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public void run() {
+
+        // built aside of the cache of WorldModel, which belongs to the thread of the agent
+        CompiledWorldModel model = WorldModel.build(contents, slipModel);
+        int states = model.states();
+
+        float[] U = new float[states];
+        float[] newU = new float[states];
+        byte[] policy = new byte[states];
+
+        int i = 0;
+        double delta;
+
+        do {
+
+            i++;
+            delta = 0.0;
+
+            float[] tmp = U;
+            U = newU;
+            newU = tmp;
+
+            for (int s = 0; s < states && !cancelled; s++) {
+                newU[s] = Solver.backup(model, U, s, policy);
+                double diff = Math.abs(newU[s] - U[s]);
+                if (diff > delta) {
+                    delta = diff;
+                }
+            }
+
+            if (cancelled) {
+                // the sweep is incomplete
+                return;
+            }
+
+            boolean converged = delta < Solver.THRESHOLD;
+            Solution solution = new Solution(model, newU.clone(), policy.clone(), i, (long) i * states);
+            latest = new Snapshot(solution, delta, converged);
+            published.countDown();
+
+        } while (delta >= Solver.THRESHOLD && i < Solver.MAX_ITERS);
+    }
+
+    /**
+     * Greedy choice without any value function: the action with the best expected immediate reward
+     * of the slip model, i.e. one that moves to GOLD and away from pits if they are next to the cell.
+     * It needs neither a compiled model nor a solution, so it is available immediately.
+     */
+    public static Action greedy(GridMap map, int x, int y) {
+        SlipModel slipModel = WorldModel.getSlipModel();
+        int cellClass = slipModel.classOf(map, x, y);
+        Action best = Action.values()[0];
+        double bestQ = Double.NEGATIVE_INFINITY;
+
+        for (Action action : Action.values()) {
+            double Q = 0;
+            for (SlipModel.Move move : slipModel.moves(cellClass, action)) {
+                int targetX = x + move.getDx();
+                int targetY = y + move.getDy();
+                CellContent target = map.contains(targetX, targetY) ? map.get(targetX, targetY) : CellContent.OBSTACLE;
+                // a move into an obstacle leaves the agent in place
+                Q += move.getProbability() * WorldModel.reward(target == CellContent.OBSTACLE ? map.get(x, y) : target);
+            }
+            if (Q > bestQ) {
+                bestQ = Q;
+                best = action;
+            }
+        }
+
+        return best;
+    }
+
+}
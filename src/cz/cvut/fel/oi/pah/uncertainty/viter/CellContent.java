@@ -1,9 +0,0 @@
-package cz.cvut.fel.oi.pah.uncertainty.viter;
-
-
-enum CellContent {
-    EMPTY,
-    OBSTACLE,
-    GOLD,
-    PIT
-}
\ No newline at end of file
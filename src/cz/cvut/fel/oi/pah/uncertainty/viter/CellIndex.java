@@ -0,0 +1,98 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+/**
+ * Dense ids of a set of cells of a map, assigned in the order the cells are added.
+ *
+ * An open-addressing hash table with linear probing, so the memory is proportional to the number
+ * of the cells added rather than to the size of the map, e.g. for the states a search has explored.
+ */
+class CellIndex {
+
+    private static final int FREE = -1;
+
+    // cell stored in each slot, FREE for an empty slot, and the id of the cell
+    private int[] slots;
+    private int[] ids;
+    private int[] cells;
+    private int size;
+
+    CellIndex() {
+        slots = new int[32];
+        ids = new int[slots.length];
+        cells = new int[slots.length / 2];
+        Arrays.fill(slots, FREE);
+    }
+
+    /**
+     * @return number of the cells
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return id of the cell, -1 if it has not been added
+     */
+    int id(int cell) {
+        int mask = slots.length - 1;
+        for (int i = hash(cell) & mask; slots[i] != FREE; i = (i + 1) & mask) {
+            if (slots[i] == cell) {
+                return ids[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the cell unless it is there already.
+     * @return id of the cell
+     */
+    int add(int cell) {
+        int mask = slots.length - 1;
+        int i = hash(cell) & mask;
+        for (; slots[i] != FREE; i = (i + 1) & mask) {
+            if (slots[i] == cell) {
+                return ids[i];
+            }
+        }
+        if (size == cells.length) {
+            grow();
+            return add(cell);
+        }
+        slots[i] = cell;
+        ids[i] = size;
+        cells[size] = cell;
+        return size++;
+    }
+
+    /**
+     * @return the cell with the given id
+     */
+    int cell(int id) {
+        return cells[id];
+    }
+
+    /**
+     * Doubles the table, it is kept at most half full.
+     */
+    private void grow() {
+        int[] oldCells = cells;
+        int count = size;
+        slots = new int[2 * slots.length];
+        ids = new int[slots.length];
+        cells = new int[slots.length / 2];
+        Arrays.fill(slots, FREE);
+        size = 0;
+        for (int id = 0; id < count; id++) {
+            add(oldCells[id]);
+        }
+    }
+
+    private static int hash(int cell) {
+        int h = cell * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,65 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+
+/**
+ * Solution of a {@link CompactWorldModel}: the value function and the policy are indexed
+ * by the dense states of the model, the cells without a state have no action.
+ *
+ * Only the mapping between the cells and the states of the model is kept, not the model,
+ * so the transition arrays can be collected once the model is solved.
+ */
+class CompactSolution extends Solution {
+
+    // state of each cell, -1 for the cells without a state, and the cell of each state
+    private final int[] states;
+    private final int[] cells;
+
+    CompactSolution(CompactWorldModel model, float[] values, byte[] actions, int sweeps, long backups) {
+        super(model.getMap().getCols(), model.getMap().getRows(), values, actions, sweeps, backups);
+        this.states = model.states;
+        this.cells = model.cells;
+    }
+
+    /**
+     * @return value of the cell, 0 if it is not reachable
+     */
+    @Override
+    public float value(int x, int y) {
+        int s = states[y * cols + x];
+        return s >= 0 ? values[s] : 0f;
+    }
+
+    @Override
+    public Action action(int x, int y) {
+        int s = states[y * cols + x];
+        return s >= 0 && actions[s] >= 0 ? Action.values()[actions[s]] : null;
+    }
+
+    @Override
+    boolean isPartial() {
+        return true;
+    }
+
+    @Override
+    float[] copyValues() {
+        float[] copy = new float[cols * rows];
+        for (int s = 0; s < values.length; s++) {
+            copy[cells[s]] = values[s];
+        }
+        return copy;
+    }
+
+    @Override
+    byte[] copyActions() {
+        byte[] copy = new byte[cols * rows];
+        Arrays.fill(copy, (byte) -1);
+        for (int s = 0; s < actions.length; s++) {
+            copy[cells[s]] = actions[s];
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,84 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Synchronous value iteration over the cells reachable from the start cell only.
+ *
+ * The map is compiled into a {@link CompactWorldModel} by a flood fill from the start, so neither
+ * the backups nor the value function, the policy and the transitions cover the obstacles
+ * and the cells walled off from the start. The sweeps are the ones of {@link ValueIterationSolver}
+ * restricted to the reachable states, whose values do not depend on the other states, so the values
+ * are the same up to the sweep the residual drops below the threshold (the other states do not delay it).
+ * The policy is undefined in the cells without a state.
+ */
+public class CompactValueIterationSolver extends Solver {
+
+    /**
+     * Solves the states reachable from any cell of the model, i.e. skips the obstacles only.
+     */
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+        GridMap map = model.getMap();
+        int[] starts = new int[map.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = i;
+        }
+        return solve(CompactWorldModel.compile(map, model.getSlipModel(), starts));
+    }
+
+    @Override
+    public Solution solve(CompiledWorldModel model, int start) {
+        return solve(CompactWorldModel.compile(model.getMap(), model.getSlipModel(), start));
+    }
+
+    /**
+     * Compiles the reachable part of the map only, the full model is never built.
+     */
+    @Override
+    public Solution solve(GridMap map, int start) {
+        return solve(CompactWorldModel.compile(map, WorldModel.getSlipModel(), start));
+    }
+
+    public Solution solve(CompactWorldModel model) {
+
+        int states = model.states();
+        int[] offsets = model.offsets;
+        int[] successors = model.successors;
+        float[] probabilities = model.probabilities;
+        float[] rewards = model.rewards;
+
+        float[] U = new float[states];
+        float[] newU = new float[states];
+        byte[] policy = new byte[states];
+
+        int i = 0;
+        double delta;
+
+        do {
+
+            i++;
+            delta = 0.0;
+
+            float[] tmp = U;
+            U = newU;
+            newU = tmp;
+
+            for (int s = 0; s < states; s++) {
+
+                newU[s] = backup(offsets, s * CompiledWorldModel.ACTIONS, successors, probabilities, rewards,
+                        GAMMA, U, s, policy);
+
+                double diff = Math.abs(newU[s] - U[s]);
+                if (diff > delta) {
+                    delta = diff;
+                }
+
+            }
+
+        } while (delta >= THRESHOLD && i < MAX_ITERS);
+
+        return new CompactSolution(model, newU, policy, i, (long) i * states);
+    }
+
+}
@@ -0,0 +1,160 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Transition model of the cells reachable from the start cells, compiled into flat arrays.
+ *
+ * Obstacles and the cells walled off from the start are not states of the model: the reachable
+ * cells get dense state ids in row-major order, {@link #state(int)} maps a cell to its state
+ * (-1 if it has none) and {@link #cell(int)} maps a state back to its cell. The transitions
+ * are stored in the CSR layout of {@link CompiledWorldModel}, indexed by the state ids.
+ */
+public class CompactWorldModel {
+
+	final GridMap map;
+	final SlipModel slipModel;
+
+	final int[] cells;
+	final int[] states;
+
+	final int[] offsets;
+	final int[] successors;
+	final float[] probabilities;
+	final float[] rewards;
+
+	private CompactWorldModel(GridMap map, SlipModel slipModel, int[] cells, int[] states,
+			int[] offsets, int[] successors, float[] probabilities, float[] rewards) {
+		this.map = map;
+		this.slipModel = slipModel;
+		this.cells = cells;
+		this.states = states;
+		this.offsets = offsets;
+		this.successors = successors;
+		this.probabilities = probabilities;
+		this.rewards = rewards;
+	}
+
+	/**
+	 * Compiles the cells of the map reachable from the start cells by a flood fill
+	 * over the moves of the slip model.
+	 *
+	 * @param map the map of the environment
+	 * @param slipModel the moves of the actions
+	 * @param starts indices of the start cells
+	 * @return compiled model of the reachable cells
+	 */
+	public static CompactWorldModel compile(GridMap map, SlipModel slipModel, int... starts) {
+		SlipModel.Compiled slip = slipModel.compile(map);
+		int[] states = new int[map.size()];
+		Arrays.fill(states, -1);
+
+		// flood fill, the states array marks the visited cells until they are numbered
+		int[] queue = new int[map.size()];
+		int head = 0;
+		int tail = 0;
+		for (int start : starts) {
+			if (states[start] < 0 && map.get(start) != CellContent.OBSTACLE) {
+				states[start] = 0;
+				queue[tail++] = start;
+			}
+		}
+
+		int size = 0;
+		while (head < tail) {
+			int cell = queue[head++];
+			if (map.get(cell) != CellContent.EMPTY) {
+				// absorbing cell, a self-loop for each action
+				size += CompiledWorldModel.ACTIONS;
+				continue;
+			}
+			for (Action action : Action.values()) {
+				int end = slip.end(cell, action);
+				for (int k = slip.begin(cell, action); k < end; k++) {
+					int target = slip.target(cell, k);
+					if (states[target] < 0) {
+						states[target] = 0;
+						queue[tail++] = target;
+					}
+					size++;
+				}
+			}
+		}
+
+		int[] cells = new int[tail];
+		int count = 0;
+		for (int cell = 0; cell < states.length; cell++) {
+			if (states[cell] == 0) {
+				cells[count] = cell;
+				states[cell] = count++;
+			}
+		}
+
+		int[] offsets = new int[count * CompiledWorldModel.ACTIONS + 1];
+		int[] successors = new int[size];
+		float[] probabilities = new float[size];
+		float[] rewards = new float[size];
+
+		int k = 0;
+		int pair = 0;
+		for (int s = 0; s < count; s++) {
+			int cell = cells[s];
+			boolean empty = map.get(cell) == CellContent.EMPTY;
+			for (Action action : Action.values()) {
+				offsets[pair++] = k;
+				if (empty) {
+					for (int m = slip.begin(cell, action); m < slip.end(cell, action); m++) {
+						int target = slip.target(cell, m);
+						successors[k] = states[target];
+						probabilities[k] = slip.probability(m);
+						rewards[k] = WorldModel.reward(map.get(target));
+						k++;
+					}
+				} else {
+					successors[k] = s;
+					probabilities[k] = 1f;
+					rewards[k] = 0;
+					k++;
+				}
+			}
+		}
+		offsets[pair] = k;
+
+		return new CompactWorldModel(map, slipModel, cells, states, offsets, successors, probabilities, rewards);
+	}
+
+	public GridMap getMap() {
+		return map;
+	}
+
+	public SlipModel getSlipModel() {
+		return slipModel;
+	}
+
+	/**
+	 * @return number of states of the model, i.e. of the reachable cells
+	 */
+	public int states() {
+		return cells.length;
+	}
+
+	/**
+	 * @return state of the cell, -1 if the cell is an obstacle or not reachable
+	 */
+	public int state(int cell) {
+		return states[cell];
+	}
+
+	/**
+	 * @return index of the cell of the state
+	 */
+	public int cell(int state) {
+		return cells[state];
+	}
+
+}
@@ -0,0 +1,196 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Transition model of the grid world compiled into flat primitive arrays.
+ *
+ * States are indexed in row-major order, i.e. s = y * cols + x. Transitions are
+ * stored in CSR layout: the transitions of the pair (s, a) occupy the range
+ * [offsets[s*4 + a], offsets[s*4 + a + 1]) of the successor, probability and reward arrays.
+ */
+public class CompiledWorldModel {
+
+	static final int ACTIONS = SlipModel.ACTIONS;
+
+	final GridMap map;
+	final SlipModel slipModel;
+	final int cols;
+	final int rows;
+
+	final int[] offsets;
+	final int[] successors;
+	final float[] probabilities;
+	final float[] rewards;
+
+	private int[] predecessorOffsets;
+	private int[] predecessors;
+	private float[] predecessorProbabilities;
+
+	CompiledWorldModel(GridMap map, SlipModel slipModel, int[] offsets, int[] successors, float[] probabilities, float[] rewards) {
+		this.map = map;
+		this.slipModel = slipModel;
+		this.cols = map.getCols();
+		this.rows = map.getRows();
+		this.offsets = offsets;
+		this.successors = successors;
+		this.probabilities = probabilities;
+		this.rewards = rewards;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return number of states of the model
+	 */
+	public int states() {
+		return cols * rows;
+	}
+
+	public int index(int x, int y) {
+		return y * cols + x;
+	}
+
+	public int x(int state) {
+		return state % cols;
+	}
+
+	public int y(int state) {
+		return state / cols;
+	}
+
+	public GridMap getMap() {
+		return map;
+	}
+
+	/**
+	 * @return the slip model the transitions were compiled from
+	 */
+	public SlipModel getSlipModel() {
+		return slipModel;
+	}
+
+	public CellContent content(int state) {
+		return map.get(state);
+	}
+
+	public boolean isObstacle(int state) {
+		return map.get(state) == CellContent.OBSTACLE;
+	}
+
+	/**
+	 * @return true if the state is a GOLD or PIT cell
+	 */
+	public boolean isTerminal(int state) {
+		CellContent content = map.get(state);
+		return content == CellContent.GOLD || content == CellContent.PIT;
+	}
+
+	public int begin(int state, Action action) {
+		return offsets[state * ACTIONS + action.ordinal()];
+	}
+
+	public int end(int state, Action action) {
+		return offsets[state * ACTIONS + action.ordinal() + 1];
+	}
+
+	/**
+	 * Returns the start offsets of the predecessor lists in {@link #predecessors()}:
+	 * the predecessors of s' are predecessors()[predecessorOffsets()[s'] .. predecessorOffsets()[s'+1]).
+	 */
+	public synchronized int[] predecessorOffsets() {
+		if (predecessorOffsets == null) {
+			buildPredecessors();
+		}
+		return predecessorOffsets;
+	}
+
+	/**
+	 * Returns the predecessor index of the model: the distinct states s from which s' is reached
+	 * with a non-zero probability under some action, grouped by s' (see {@link #predecessorOffsets()}).
+	 */
+	public synchronized int[] predecessors() {
+		if (predecessors == null) {
+			buildPredecessors();
+		}
+		return predecessors;
+	}
+
+	/**
+	 * Returns max_a T(s, a, s') for each entry of {@link #predecessors()}.
+	 */
+	public synchronized float[] predecessorProbabilities() {
+		if (predecessorProbabilities == null) {
+			buildPredecessors();
+		}
+		return predecessorProbabilities;
+	}
+
+	private void buildPredecessors() {
+		int states = states();
+		int[] counts = new int[states + 1];
+		int[] stamp = new int[states];
+		Arrays.fill(stamp, -1);
+
+		// count distinct (s, s') pairs, the stamp avoids counting s' twice for the same s
+		for (int s = 0; s < states; s++) {
+			for (int k = offsets[s * ACTIONS]; k < offsets[(s + 1) * ACTIONS]; k++) {
+				int succ = successors[k];
+				if (stamp[succ] != s && probabilities[k] > 0) {
+					stamp[succ] = s;
+					counts[succ + 1]++;
+				}
+			}
+		}
+
+		for (int s = 0; s < states; s++) {
+			counts[s + 1] += counts[s];
+		}
+
+		int[] fill = Arrays.copyOf(counts, states);
+		int[] preds = new int[counts[states]];
+		float[] probs = new float[counts[states]];
+		int[] entry = new int[states];
+		float[] total = new float[states];
+		Arrays.fill(stamp, -1);
+
+		for (int s = 0; s < states; s++) {
+			for (int a = 0; a < ACTIONS; a++) {
+				// T(s, a, s') sums over all transitions of (s, a) leading to s'
+				for (int k = offsets[s * ACTIONS + a]; k < offsets[s * ACTIONS + a + 1]; k++) {
+					total[successors[k]] = 0;
+				}
+				for (int k = offsets[s * ACTIONS + a]; k < offsets[s * ACTIONS + a + 1]; k++) {
+					total[successors[k]] += probabilities[k];
+				}
+				for (int k = offsets[s * ACTIONS + a]; k < offsets[s * ACTIONS + a + 1]; k++) {
+					int succ = successors[k];
+					if (probabilities[k] > 0) {
+						if (stamp[succ] != s) {
+							stamp[succ] = s;
+							entry[succ] = fill[succ]++;
+							preds[entry[succ]] = s;
+						}
+						probs[entry[succ]] = Math.max(probs[entry[succ]], total[succ]);
+					}
+				}
+			}
+		}
+
+		predecessorOffsets = counts;
+		predecessors = preds;
+		predecessorProbabilities = probs;
+	}
+
+}
@@ -2,12 +2,14 @@ package cz.cvut.fel.oi.pah.uncertainty.viter;
 
 import cz.agents.alite.vis.VisManager;
 import cz.agents.alite.vis.layer.toggle.KeyToggleLayer;
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
 
 
 public class DebugVis {
 	public static float[][] stateValues;
     public static float[][][] stateActionValues;
     public static Action[][] policy;
+    public static Policy compactPolicy;
     
     /**
      * Create three visualization layers:
@@ -68,6 +70,14 @@ public class DebugVis {
 					return policy;
 				}
 			}, 10));
+		pLayer.addSubLayer(
+			PolicyLayer.create(new  PolicyLayer.CompactPolicyProvider() {
+
+				@Override
+				public Policy getPolicy() {
+					return compactPolicy;
+				}
+			}, 10));
 		pLayer.setEnabled(false);
 		VisManager.registerLayer(pLayer);
     }
@@ -83,6 +93,13 @@ public class DebugVis {
 	public static void setPolicy(Action[][] policy) {
 		DebugVis.policy = policy;
 	}
+
+	/**
+	 * Sets the policy without materializing it as an array, e.g. a {@link RunLengthPolicy}.
+	 */
+	public static void setPolicy(Policy policy) {
+		DebugVis.compactPolicy = policy;
+	}
     
     
     
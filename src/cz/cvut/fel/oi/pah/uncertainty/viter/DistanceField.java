@@ -0,0 +1,165 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Number of deterministic moves from each cell of a map to the nearest target cell.
+ *
+ * Computed by a multi-source breadth-first search backward from the targets: a cell is
+ * expanded only if the agent can move out of it, i.e. if it is EMPTY, so the paths
+ * lead around obstacles and never pass through GOLD or PIT cells.
+ *
+ * The moves are the four deterministic moves of the actions, or, for a slip model,
+ * all the moves any of its actions may end with (e.g. the diagonal ones of {@link SlipModel.Drift},
+ * which makes the field 8-connected). The latter never overestimates the number of steps
+ * the agent needs under that slip model.
+ */
+public class DistanceField {
+
+	/**
+	 * Distance of the cells no target is reachable from.
+	 */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private final int cols;
+	private final int rows;
+	private final int[] distances;
+
+	/**
+	 * @param map the map of the environment
+	 * @param target content of the target cells
+	 */
+	public DistanceField(GridMap map, CellContent target) {
+		this(map, target, directions(Action.values()));
+	}
+
+	/**
+	 * @param map the map of the environment
+	 * @param target content of the target cells
+	 * @param slipModel the slip model whose moves connect the cells
+	 */
+	public DistanceField(GridMap map, CellContent target, SlipModel slipModel) {
+		this(map, target, moves(slipModel));
+	}
+
+	/**
+	 * @param moves the moves as pairs (dx, dy)
+	 */
+	private DistanceField(GridMap map, CellContent target, int[][] moves) {
+		this.cols = map.getCols();
+		this.rows = map.getRows();
+		this.distances = new int[map.size()];
+		Arrays.fill(distances, UNREACHABLE);
+
+		int[] queue = new int[map.size()];
+		int head = 0;
+		int tail = 0;
+
+		for (int i = 0; i < map.size(); i++) {
+			if (map.get(i) == target) {
+				distances[i] = 0;
+				queue[tail++] = i;
+			}
+		}
+
+		while (head < tail) {
+			int cell = queue[head++];
+			int x = map.x(cell);
+			int y = map.y(cell);
+			for (int[] move : moves) {
+				// the agent moves from the cell back by the move to this one
+				int fx = x - move[0];
+				int fy = y - move[1];
+				if (map.contains(fx, fy)) {
+					int from = map.index(fx, fy);
+					if (distances[from] == UNREACHABLE && map.get(from) == CellContent.EMPTY) {
+						distances[from] = distances[cell] + 1;
+						queue[tail++] = from;
+					}
+				}
+			}
+		}
+	}
+
+	private static int[][] directions(Action[] actions) {
+		int[][] moves = new int[actions.length][];
+		for (int i = 0; i < actions.length; i++) {
+			moves[i] = new int[] { actions[i].getDirection().x, actions[i].getDirection().y };
+		}
+		return moves;
+	}
+
+	/**
+	 * @return the distinct moves other than staying of all actions in all classes of cells of the slip model
+	 */
+	private static int[][] moves(SlipModel slipModel) {
+		// the moves are at most one cell in each axis
+		boolean[] seen = new boolean[9];
+		int count = 0;
+		for (int c = 0; c < slipModel.classes(); c++) {
+			for (Action action : Action.values()) {
+				for (SlipModel.Move move : slipModel.moves(c, action)) {
+					int key = (move.getDy() + 1) * 3 + move.getDx() + 1;
+					if ((move.getDx() != 0 || move.getDy() != 0) && move.getProbability() > 0 && !seen[key]) {
+						seen[key] = true;
+						count++;
+					}
+				}
+			}
+		}
+		int[][] moves = new int[count][];
+		int i = 0;
+		for (int key = 0; key < seen.length; key++) {
+			if (seen[key]) {
+				moves[i++] = new int[] { key % 3 - 1, key / 3 - 1 };
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * @return distance field to the nearest GOLD of the map
+	 */
+	public static DistanceField toGold(GridMap map) {
+		return new DistanceField(map, CellContent.GOLD);
+	}
+
+	/**
+	 * @return distance field to the nearest GOLD of the map over the moves of the slip model
+	 */
+	public static DistanceField toGold(GridMap map, SlipModel slipModel) {
+		return new DistanceField(map, CellContent.GOLD, slipModel);
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return number of moves from the cell to the nearest target, {@link #UNREACHABLE} if there is none
+	 */
+	public int distance(int x, int y) {
+		return distances[y * cols + x];
+	}
+
+	/**
+	 * @see #distance(int, int)
+	 */
+	public int distance(int index) {
+		return distances[index];
+	}
+
+	public boolean isReachable(int index) {
+		return distances[index] != UNREACHABLE;
+	}
+
+}
@@ -0,0 +1,73 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+
+/**
+ * Solution of a search that explored only a part of the map, e.g. of {@link LrtdpSolver}:
+ * the value function and the policy are indexed by the ids of the explored cells
+ * (see {@link CellIndex}), so the solution takes memory proportional to the explored region.
+ *
+ * The cells that were not explored have no action and the value of the heuristic of the search.
+ */
+class ExploredSolution extends Solution {
+
+    private final CellIndex index;
+    private final GoalHeuristic heuristic;
+
+    ExploredSolution(GoalHeuristic heuristic, CellIndex index, float[] values, byte[] actions,
+            int sweeps, long backups) {
+        super(heuristic.getMap().getCols(), heuristic.getMap().getRows(), values, actions, sweeps, backups);
+        this.index = index;
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public float value(int x, int y) {
+        int cell = y * cols + x;
+        int s = index.id(cell);
+        return s >= 0 ? values[s] : heuristic.value(cell);
+    }
+
+    @Override
+    public Action action(int x, int y) {
+        int s = index.id(y * cols + x);
+        return s >= 0 && actions[s] >= 0 ? Action.values()[actions[s]] : null;
+    }
+
+    /**
+     * @return number of the explored cells
+     */
+    public int getExplored() {
+        return index.size();
+    }
+
+    @Override
+    boolean isPartial() {
+        return true;
+    }
+
+    @Override
+    float[] copyValues() {
+        float[] copy = new float[cols * rows];
+        for (int cell = 0; cell < copy.length; cell++) {
+            copy[cell] = heuristic.value(cell);
+        }
+        for (int s = 0; s < index.size(); s++) {
+            copy[index.cell(s)] = values[s];
+        }
+        return copy;
+    }
+
+    @Override
+    byte[] copyActions() {
+        byte[] copy = new byte[cols * rows];
+        Arrays.fill(copy, (byte) -1);
+        for (int s = 0; s < index.size(); s++) {
+            copy[index.cell(s)] = actions[s];
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,97 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+
+/**
+ * Asynchronous (Gauss-Seidel) value iteration.
+ *
+ * The value function is updated in place, so a backup already uses the new values
+ * of the states updated earlier in the same sweep. States are swept in the order of
+ * their BFS distance from the terminal (GOLD and PIT) cells, hence the values spread
+ * outwards from the terminals within a single sweep.
+ */
+public class GaussSeidelSolver extends Solver {
+
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+
+        int states = model.states();
+        int[] order = goalOutwardOrder(model);
+
+        float[] U = new float[states];
+        byte[] policy = new byte[states];
+
+        int i = 0;
+        double delta;
+
+        do {
+
+            i++;
+            delta = 0.0;
+
+            for (int s : order) {
+
+                float maxQ = backup(model, U, s, policy);
+
+                double diff = Math.abs(maxQ - U[s]);
+                if (diff > delta) {
+                    delta = diff;
+                }
+
+                U[s] = maxQ;
+
+            }
+
+        } while (delta >= THRESHOLD && i < MAX_ITERS);
+
+        return new Solution(model, U, policy, i, (long) i * states);
+    }
+
+    /**
+     * Orders the states by their BFS distance (over non-obstacle cells) from the GOLD and PIT cells.
+     * States not reachable from any terminal follow in row-major order.
+     */
+    static int[] goalOutwardOrder(CompiledWorldModel model) {
+        int states = model.states();
+        int cols = model.getCols();
+        int rows = model.getRows();
+
+        int[] order = new int[states];
+        boolean[] visited = new boolean[states];
+        int head = 0;
+        int tail = 0;
+
+        for (int s = 0; s < states; s++) {
+            if (model.isTerminal(s)) {
+                visited[s] = true;
+                order[tail++] = s;
+            }
+        }
+
+        while (head < tail) {
+            int s = order[head++];
+            int x = model.x(s);
+            int y = model.y(s);
+            for (Action a : Action.values()) {
+                int nx = x + a.getDirection().x;
+                int ny = y + a.getDirection().y;
+                if (nx >= 0 && nx < cols && ny >= 0 && ny < rows) {
+                    int n = model.index(nx, ny);
+                    if (!visited[n] && !model.isObstacle(n)) {
+                        visited[n] = true;
+                        order[tail++] = n;
+                    }
+                }
+            }
+        }
+
+        for (int s = 0; s < states; s++) {
+            if (!visited[s]) {
+                order[tail++] = s;
+            }
+        }
+
+        return order;
+    }
+
+}
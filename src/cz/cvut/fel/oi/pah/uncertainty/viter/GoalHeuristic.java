@@ -0,0 +1,81 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Admissible heuristic of a map computed cell by cell without a search: the value of a path
+ * to the nearest GOLD as if no obstacles were in the way (see {@link Solver#pathValue(int)}).
+ *
+ * The distance is the Manhattan distance, or the Chebyshev distance if the slip model
+ * may move the agent diagonally, so no outcome of the actions reaches GOLD in fewer moves
+ * and the value is an upper bound on V*. It is weaker than the one of {@link DistanceField},
+ * but it costs nothing per cell beyond finding the GOLD cells of the map once.
+ */
+class GoalHeuristic {
+
+    private final GridMap map;
+    private final boolean diagonal;
+    private final int[] goldX;
+    private final int[] goldY;
+
+    /**
+     * @param map the map, it must not change while the heuristic is used
+     * @param slip the slip model compiled for the map
+     */
+    GoalHeuristic(GridMap map, SlipModel.Compiled slip) {
+        this.map = map;
+
+        boolean diagonal = false;
+        for (int k = 0; k < slip.size(); k++) {
+            diagonal |= slip.dx(k) != 0 && slip.dy(k) != 0 && slip.probability(k) > 0;
+        }
+        this.diagonal = diagonal;
+
+        int golds = 0;
+        for (int i = 0; i < map.size(); i++) {
+            if (map.get(i) == CellContent.GOLD) {
+                golds++;
+            }
+        }
+        goldX = new int[golds];
+        goldY = new int[golds];
+        int g = 0;
+        for (int i = 0; i < map.size(); i++) {
+            if (map.get(i) == CellContent.GOLD) {
+                goldX[g] = map.x(i);
+                goldY[g] = map.y(i);
+                g++;
+            }
+        }
+    }
+
+    GridMap getMap() {
+        return map;
+    }
+
+    /**
+     * @return lower bound on the number of moves from the cell to the nearest GOLD,
+     * {@link DistanceField#UNREACHABLE} if the map has none
+     */
+    int distance(int cell) {
+        int x = map.x(cell);
+        int y = map.y(cell);
+        int min = DistanceField.UNREACHABLE;
+        for (int g = 0; g < goldX.length; g++) {
+            int dx = Math.abs(goldX[g] - x);
+            int dy = Math.abs(goldY[g] - y);
+            min = Math.min(min, diagonal ? Math.max(dx, dy) : dx + dy);
+        }
+        return min;
+    }
+
+    /**
+     * @return upper bound on the value of the cell, the exact value 0 in the absorbing cells
+     */
+    float value(int cell) {
+        return map.get(cell) == CellContent.EMPTY ? Solver.pathValue(distance(cell)) : 0f;
+    }
+
+}
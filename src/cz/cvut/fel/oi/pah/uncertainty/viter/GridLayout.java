@@ -0,0 +1,318 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Order in which the cells of a grid are stored in the flat arrays of {@link LayoutValueIterationSolver}
+ * (the map, the value function and the policy), together with a sweep that visits the cells
+ * in the same order.
+ *
+ * A backup of a cell reads its four neighbours. In the row-major order the neighbours above and below
+ * are a whole row away, so a sweep over a wide grid streams three rows through the cache at once,
+ * and in the column-major order of the original float[cols][rows] arrays the same holds for
+ * the neighbours to the left and to the right. The Z-order (Morton) and the tiled layouts keep
+ * square blocks of cells together, so most neighbours share a cache line or at least a page.
+ *
+ * The layouts may contain padding cells outside of the map, they are stored as obstacles
+ * and skipped by the sweeps.
+ */
+public abstract class GridLayout {
+
+    public enum Order {
+        /** index y * cols + x, the order of {@link GridMap} */
+        ROW_MAJOR,
+        /** index x * rows + y, the order of the original float[cols][rows] arrays */
+        COLUMN_MAJOR,
+        /** bits of x and y interleaved, the grid padded to a square with a power of two side */
+        MORTON,
+        /** row-major tiles of {@link GridLayout#TILE} x {@link GridLayout#TILE} cells, row-major inside a tile */
+        TILED
+    }
+
+    /**
+     * Side of a tile of the tiled layout, a tile of floats fills one 4 KiB page.
+     */
+    static final int TILE = 32;
+
+    private static final byte OBSTACLE = (byte) CellContent.OBSTACLE.ordinal();
+    private static final byte EMPTY = (byte) CellContent.EMPTY.ordinal();
+
+    final int cols;
+    final int rows;
+
+    private GridLayout(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+    }
+
+    static GridLayout create(Order order, int cols, int rows) {
+        switch (order) {
+            case ROW_MAJOR:		return new RowMajor(cols, rows);
+            case COLUMN_MAJOR:	return new ColumnMajor(cols, rows);
+            case MORTON:		return new Morton(cols, rows);
+            case TILED:			return new Tiled(cols, rows);
+            default:			throw new IllegalArgumentException("unknown order: " + order);
+        }
+    }
+
+    /**
+     * @return length of the arrays in this layout, including the padding
+     */
+    abstract int size();
+
+    /**
+     * @return position of the cell (x, y) of the map in the arrays
+     */
+    abstract int index(int x, int y);
+
+    /**
+     * One synchronous sweep over all cells of the map in the order of the layout.
+     * @param cells contents of the cells (ordinals) in this layout, see {@link #cells(GridMap)}
+     * @return max residual of the sweep
+     */
+    abstract double sweep(byte[] cells, float[] rewards, float[] U, float[] newU, byte[] policy);
+
+    /**
+     * @return cell contents of the map in this layout, the padding cells are obstacles
+     */
+    byte[] cells(GridMap map) {
+        byte[] cells = new byte[size()];
+        Arrays.fill(cells, OBSTACLE);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                cells[index(x, y)] = (byte) map.ordinal(map.index(x, y));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Bellman backup of the cell c of the standard slip model; the neighbours are
+     * given by their positions, -1 if they lie outside of the map.
+     *
+     * The Q-values are combined by {@link StencilKernel#backup}, as in {@link StencilValueIterationSolver},
+     * so the solution is identical to the one of {@link ValueIterationSolver}.
+     * @return residual of the cell
+     */
+    static double backup(byte[] cells, float[] rewards, float[] U, float[] newU, byte[] policy,
+            int c, int north, int south, int east, int west) {
+
+        if (cells[c] != EMPTY) {
+            // absorbing cell: a self-loop with zero reward for every action
+            float value = (float) (1f * (0 + Solver.GAMMA * U[c]));
+            newU[c] = value;
+            policy[c] = 0;
+            return Math.abs(value - U[c]);
+        }
+
+        double self = rewards[cells[c]] + Solver.GAMMA * U[c];
+        double wN = north >= 0 && cells[north] != OBSTACLE ? rewards[cells[north]] + Solver.GAMMA * U[north] : self;
+        double wS = south >= 0 && cells[south] != OBSTACLE ? rewards[cells[south]] + Solver.GAMMA * U[south] : self;
+        double wE = east >= 0 && cells[east] != OBSTACLE ? rewards[cells[east]] + Solver.GAMMA * U[east] : self;
+        double wW = west >= 0 && cells[west] != OBSTACLE ? rewards[cells[west]] + Solver.GAMMA * U[west] : self;
+
+        float maxQ = StencilKernel.backup(wN, wS, wE, wW, policy, c);
+        newU[c] = maxQ;
+        return Math.abs(maxQ - U[c]);
+    }
+
+    private static class RowMajor extends GridLayout {
+
+        RowMajor(int cols, int rows) {
+            super(cols, rows);
+        }
+
+        @Override
+        int size() {
+            return cols * rows;
+        }
+
+        @Override
+        int index(int x, int y) {
+            return y * cols + x;
+        }
+
+        @Override
+        double sweep(byte[] cells, float[] rewards, float[] U, float[] newU, byte[] policy) {
+            double delta = 0.0;
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    int c = y * cols + x;
+                    double diff = backup(cells, rewards, U, newU, policy, c,
+                            y > 0 ? c - cols : -1, y < rows - 1 ? c + cols : -1,
+                            x < cols - 1 ? c + 1 : -1, x > 0 ? c - 1 : -1);
+                    delta = diff > delta ? diff : delta;
+                }
+            }
+            return delta;
+        }
+
+    }
+
+    private static class ColumnMajor extends GridLayout {
+
+        ColumnMajor(int cols, int rows) {
+            super(cols, rows);
+        }
+
+        @Override
+        int size() {
+            return cols * rows;
+        }
+
+        @Override
+        int index(int x, int y) {
+            return x * rows + y;
+        }
+
+        @Override
+        double sweep(byte[] cells, float[] rewards, float[] U, float[] newU, byte[] policy) {
+            double delta = 0.0;
+            for (int x = 0; x < cols; x++) {
+                for (int y = 0; y < rows; y++) {
+                    int c = x * rows + y;
+                    double diff = backup(cells, rewards, U, newU, policy, c,
+                            y > 0 ? c - 1 : -1, y < rows - 1 ? c + 1 : -1,
+                            x < cols - 1 ? c + rows : -1, x > 0 ? c - rows : -1);
+                    delta = diff > delta ? diff : delta;
+                }
+            }
+            return delta;
+        }
+
+    }
+
+    /**
+     * Z-order over a square grid whose side is a power of two: x occupies the even bits
+     * of the index and y the odd ones. The sweep visits the indices in increasing order and
+     * finds the neighbours by the arithmetic on the dilated coordinates (the bits of one coordinate
+     * with the bits of the other one masked out), which preserves their order, so the bounds of the map
+     * are checked on the dilated coordinates too.
+     */
+    private static class Morton extends GridLayout {
+
+        private static final int X = 0x55555555;
+        private static final int Y = 0xAAAAAAAA;
+
+        private final int side;
+
+        Morton(int cols, int rows) {
+            super(cols, rows);
+            int side = 1;
+            while (side < Math.max(cols, rows)) {
+                side <<= 1;
+            }
+            if ((long) side * side > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("grid too large for the Z-order: " + cols + "x" + rows);
+            }
+            this.side = side;
+        }
+
+        private static int dilate(int v) {
+            v = (v | (v << 8)) & 0x00FF00FF;
+            v = (v | (v << 4)) & 0x0F0F0F0F;
+            v = (v | (v << 2)) & 0x33333333;
+            v = (v | (v << 1)) & 0x55555555;
+            return v;
+        }
+
+        @Override
+        int size() {
+            return side * side;
+        }
+
+        @Override
+        int index(int x, int y) {
+            return dilate(x) | (dilate(y) << 1);
+        }
+
+        @Override
+        double sweep(byte[] cells, float[] rewards, float[] U, float[] newU, byte[] policy) {
+            // dilated bounds of the map
+            int lastX = dilate(cols - 1);
+            int lastY = dilate(rows - 1) << 1;
+            int size = size();
+
+            double delta = 0.0;
+            for (int c = 0; c < size; c++) {
+                int x = c & X;
+                int y = c & Y;
+                if (x > lastX || y > lastY) {
+                    // padding
+                    continue;
+                }
+                int north = y != 0 ? (((y & Y) - 1) & Y) | x : -1;
+                int south = y != lastY ? (((y | X) + 1) & Y) | x : -1;
+                int east = x != lastX ? (((x | Y) + 1) & X) | y : -1;
+                int west = x != 0 ? (((x & X) - 1) & X) | y : -1;
+                double diff = backup(cells, rewards, U, newU, policy, c, north, south, east, west);
+                delta = diff > delta ? diff : delta;
+            }
+            return delta;
+        }
+
+    }
+
+    /**
+     * Tiles of {@link #TILE} x {@link #TILE} cells in row-major order, the cells of a tile
+     * are stored row-major too. The sweep processes the tiles one by one.
+     */
+    private static class Tiled extends GridLayout {
+
+        private static final int SHIFT = Integer.numberOfTrailingZeros(TILE);
+        private static final int MASK = TILE - 1;
+
+        private final int tilesX;
+        private final int tilesY;
+
+        Tiled(int cols, int rows) {
+            super(cols, rows);
+            this.tilesX = (cols + MASK) >> SHIFT;
+            this.tilesY = (rows + MASK) >> SHIFT;
+            if ((long) tilesX * tilesY * TILE * TILE > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("grid too large: " + cols + "x" + rows);
+            }
+        }
+
+        @Override
+        int size() {
+            return tilesX * tilesY * TILE * TILE;
+        }
+
+        @Override
+        int index(int x, int y) {
+            return (((y >> SHIFT) * tilesX + (x >> SHIFT)) << (2 * SHIFT)) + ((y & MASK) << SHIFT) + (x & MASK);
+        }
+
+        @Override
+        double sweep(byte[] cells, float[] rewards, float[] U, float[] newU, byte[] policy) {
+            double delta = 0.0;
+            for (int tileY = 0; tileY < tilesY; tileY++) {
+                int top = tileY << SHIFT;
+                int bottom = Math.min(top + TILE, rows);
+                for (int tileX = 0; tileX < tilesX; tileX++) {
+                    int left = tileX << SHIFT;
+                    int right = Math.min(left + TILE, cols);
+                    for (int y = top; y < bottom; y++) {
+                        int c = index(left, y);
+                        for (int x = left; x < right; x++, c++) {
+                            // the neighbours inside the tile are at fixed offsets
+                            int north = y == top ? (y > 0 ? index(x, y - 1) : -1) : c - TILE;
+                            int south = y == top + MASK ? (y < rows - 1 ? index(x, y + 1) : -1) : (y < rows - 1 ? c + TILE : -1);
+                            int east = x == left + MASK ? (x < cols - 1 ? index(x + 1, y) : -1) : (x < cols - 1 ? c + 1 : -1);
+                            int west = x == left ? (x > 0 ? index(x - 1, y) : -1) : c - 1;
+                            double diff = backup(cells, rewards, U, newU, policy, c, north, south, east, west);
+                            delta = diff > delta ? diff : delta;
+                        }
+                    }
+                }
+            }
+            return delta;
+        }
+
+    }
+
+}
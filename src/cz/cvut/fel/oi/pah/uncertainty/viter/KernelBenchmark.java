@@ -0,0 +1,117 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Random;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Compares the sweeps of {@link StencilValueIterationSolver} with the scalar {@link StencilKernel}
+ * and with the kernel returned by {@link StencilKernel#create()} on random square maps.
+ *
+ * The vector kernel is used only when its class is on the class path and the JVM runs with
+ * --add-modules jdk.incubator.vector, otherwise both runs use the scalar kernel.
+ * Both kernels are warmed up on a smaller map first, then each runs a fixed number of sweeps
+ * and reports the time per cell backup.
+ */
+public class KernelBenchmark {
+
+	private static final double OBST_RATIO = 0.2;
+	private static final double PIT_RATIO = 0.05;
+	private static final int GOLDS = 16;
+
+	// the kernels are compiled by the JIT on a map of this side before the measured runs
+	private static final int WARMUP_SIZE = 512;
+	private static final int WARMUP_SWEEPS = 50;
+
+	private static GridMap generateMap(int size, Random rnd) {
+		GridMap map = new GridMap(size, size);
+		for (int i = 0; i < map.size(); i++) {
+			double r = rnd.nextDouble();
+			if (r < OBST_RATIO) {
+				map.set(i, CellContent.OBSTACLE);
+			} else if (r < OBST_RATIO + PIT_RATIO) {
+				map.set(i, CellContent.PIT);
+			}
+		}
+		for (int i = 0; i < GOLDS; i++) {
+			map.set(rnd.nextInt(map.size()), CellContent.GOLD);
+		}
+		return map;
+	}
+
+	private static double run(StencilKernel kernel, GridMap map, int sweeps) {
+		int cols = map.getCols();
+		int rows = map.getRows();
+		int width = cols + 2;
+
+		byte[] cells = StencilValueIterationSolver.pad(map);
+		float[] rewards = StencilValueIterationSolver.rewards();
+		float[] U = new float[width * (rows + 2)];
+		float[] newU = new float[width * (rows + 2)];
+		byte[] policy = new byte[cols * rows];
+
+		double[][] window = { new double[width], new double[width], new double[width] };
+
+		// warm-up, also touches all pages of the arrays
+		sweep(kernel, cells, rewards, U, newU, policy, rows, width, window);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < sweeps; i++) {
+			float[] tmp = U;
+			U = newU;
+			newU = tmp;
+			sweep(kernel, cells, rewards, U, newU, policy, rows, width, window);
+		}
+		return (double) (System.nanoTime() - start) / sweeps / map.size();
+	}
+
+	private static void sweep(StencilKernel kernel, byte[] cells, float[] rewards, float[] U, float[] newU,
+			byte[] policy, int rows, int width, double[][] window) {
+		double[] above = window[0];
+		double[] row = window[1];
+		double[] below = window[2];
+		StencilValueIterationSolver.weights(cells, rewards, U, 0, width, above);
+		StencilValueIterationSolver.weights(cells, rewards, U, 1, width, row);
+		for (int y = 1; y <= rows; y++) {
+			StencilValueIterationSolver.weights(cells, rewards, U, y + 1, width, below);
+			kernel.backupRow(cells, U, newU, policy, y, width, above, row, below);
+			double[] rotated = above;
+			above = row;
+			row = below;
+			below = rotated;
+		}
+	}
+
+	/**
+	 * @param args number of sweeps (default 20) followed by the sides of the maps (default 256 1024 4096)
+	 */
+	public static void main(String[] args) {
+		int sweeps = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int[] sizes = { 256, 1024, 4096 };
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				sizes[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		StencilKernel[] kernels = { new StencilKernel(), StencilKernel.create() };
+		GridMap warmup = generateMap(WARMUP_SIZE, new Random(WARMUP_SIZE));
+		for (StencilKernel kernel : kernels) {
+			run(kernel, warmup, WARMUP_SWEEPS);
+		}
+
+		for (int size : sizes) {
+			GridMap map = generateMap(size, new Random(size));
+			double scalar = 0.0;
+			for (StencilKernel kernel : kernels) {
+				double ns = run(kernel, map, sweeps);
+				scalar = scalar == 0.0 ? ns : scalar;
+				System.out.println(String.format(">>> %dx%d %-20s %6.2f ns/backup (%.2fx)",
+						size, size, kernel, ns, scalar / ns));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Random;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Compares the sweeps of value iteration over the {@link GridLayout}s on random square maps:
+ * the row-major order of the map, the column-major order of the original float[cols][rows]
+ * arrays, the Z-order and the tiles.
+ *
+ * Each layout runs a fixed number of sweeps (the maps are too large to solve them to convergence
+ * in a benchmark) after one warm-up sweep, and reports the time per cell backup.
+ * The arrays of a 16384 x 16384 map take about 2.5 GB, run it with -Xmx4g.
+ */
+public class LayoutBenchmark {
+
+	private static final double OBST_RATIO = 0.2;
+	private static final double PIT_RATIO = 0.05;
+	private static final int GOLDS = 16;
+
+	private static GridMap generateMap(int size, Random rnd) {
+		GridMap map = new GridMap(size, size);
+		for (int i = 0; i < map.size(); i++) {
+			double r = rnd.nextDouble();
+			if (r < OBST_RATIO) {
+				map.set(i, CellContent.OBSTACLE);
+			} else if (r < OBST_RATIO + PIT_RATIO) {
+				map.set(i, CellContent.PIT);
+			}
+		}
+		for (int i = 0; i < GOLDS; i++) {
+			map.set(rnd.nextInt(map.size()), CellContent.GOLD);
+		}
+		return map;
+	}
+
+	private static double run(GridLayout layout, GridMap map, int sweeps) {
+		byte[] cells = layout.cells(map);
+		float[] rewards = LayoutValueIterationSolver.rewards();
+		float[] U = new float[layout.size()];
+		float[] newU = new float[layout.size()];
+		byte[] policy = new byte[layout.size()];
+
+		// warm-up, also touches all pages of the arrays
+		layout.sweep(cells, rewards, U, newU, policy);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < sweeps; i++) {
+			float[] tmp = U;
+			U = newU;
+			newU = tmp;
+			layout.sweep(cells, rewards, U, newU, policy);
+		}
+		return (double) (System.nanoTime() - start) / sweeps / map.size();
+	}
+
+	/**
+	 * @param args number of sweeps (default 5) followed by the sides of the maps (default 1024 4096 16384)
+	 */
+	public static void main(String[] args) {
+		int sweeps = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int[] sizes = { 1024, 4096, 16384 };
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				sizes[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		for (int size : sizes) {
+			GridMap map = generateMap(size, new Random(size));
+			for (GridLayout.Order order : GridLayout.Order.values()) {
+				double ns = run(GridLayout.create(order, size, size), map, sweeps);
+				System.out.println(String.format(">>> %dx%d %-12s %6.2f ns/backup", size, size, order, ns));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+
+/**
+ * Solution whose value function and policy are stored in a {@link GridLayout}
+ * instead of the row-major order of the map.
+ */
+class LayoutSolution extends Solution {
+
+    private final GridLayout layout;
+
+    LayoutSolution(GridLayout layout, float[] values, byte[] actions, int sweeps, long backups) {
+        super(layout.cols, layout.rows, values, actions, sweeps, backups);
+        this.layout = layout;
+    }
+
+    @Override
+    public float value(int x, int y) {
+        return values[layout.index(x, y)];
+    }
+
+    @Override
+    public Action action(int x, int y) {
+        byte action = actions[layout.index(x, y)];
+        return action >= 0 ? Action.values()[action] : null;
+    }
+
+    @Override
+    float[] copyValues() {
+        float[] copy = new float[cols * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                copy[y * cols + x] = values[layout.index(x, y)];
+            }
+        }
+        return copy;
+    }
+
+    @Override
+    byte[] copyActions() {
+        byte[] copy = new byte[cols * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                copy[y * cols + x] = actions[layout.index(x, y)];
+            }
+        }
+        return copy;
+    }
+
+}
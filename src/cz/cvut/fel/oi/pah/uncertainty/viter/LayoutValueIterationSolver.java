@@ -0,0 +1,87 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Synchronous value iteration over the map, the value function and the policy stored
+ * in a cache-friendly {@link GridLayout}: the Z-order (Morton) or square tiles.
+ *
+ * Like {@link StencilValueIterationSolver}, the solver never compiles the transitions,
+ * the backups follow the stencil of {@link SlipModel#STANDARD} and the solution is identical
+ * to the one of {@link ValueIterationSolver}. Each sweep visits the cells in the order
+ * they are stored in, see {@link LayoutBenchmark} for a comparison of the layouts.
+ */
+public class LayoutValueIterationSolver extends Solver {
+
+    private final GridLayout.Order order;
+
+    public LayoutValueIterationSolver(GridLayout.Order order) {
+        this.order = order;
+    }
+
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+        if (model.getSlipModel() != SlipModel.STANDARD) {
+            return new ValueIterationSolver().solve(model);
+        }
+        return solve(model.getMap());
+    }
+
+    /**
+     * Solves the map directly, the transitions are never compiled.
+     */
+    @Override
+    public Solution solve(GridMap map, int start) {
+        if (WorldModel.getSlipModel() != SlipModel.STANDARD) {
+            return new ValueIterationSolver().solve(WorldModel.compile(map));
+        }
+        return solve(map);
+    }
+
+    private Solution solve(GridMap map) {
+
+        GridLayout layout = GridLayout.create(order, map.getCols(), map.getRows());
+        byte[] cells = layout.cells(map);
+        float[] rewards = rewards();
+
+        float[] U = new float[layout.size()];
+        float[] newU = new float[layout.size()];
+        byte[] policy = new byte[layout.size()];
+
+        int i = 0;
+        double delta;
+
+        do {
+
+            i++;
+
+            float[] tmp = U;
+            U = newU;
+            newU = tmp;
+
+            delta = layout.sweep(cells, rewards, U, newU, policy);
+
+        } while (delta >= THRESHOLD && i < MAX_ITERS);
+
+        return new LayoutSolution(layout, newU, policy, i, (long) i * map.size());
+    }
+
+    /**
+     * @return reward of entering a cell indexed by its content
+     */
+    static float[] rewards() {
+        float[] rewards = new float[CellContent.values().length];
+        for (CellContent content : CellContent.values()) {
+            rewards[content.ordinal()] = WorldModel.reward(content);
+        }
+        return rewards;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "(" + order + ")";
+    }
+
+}
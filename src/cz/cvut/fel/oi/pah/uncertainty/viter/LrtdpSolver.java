@@ -0,0 +1,288 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Labeled real-time dynamic programming (LRTDP, Bonet and Geffner 2003).
+ *
+ * Runs greedy trials from the start state, backing up the states along the trial, and labels
+ * a state solved once the residuals of all states reachable from it under the greedy policy
+ * are below the threshold. The values of unvisited states are given by an admissible heuristic:
+ * the value of a path to GOLD as if no obstacles were in the way (see {@link GoalHeuristic}),
+ * which is an upper bound on the value of every state.
+ *
+ * The solver works on the map directly and touches only the states the trials and the checks visit:
+ * the visited cells get dense ids (see {@link CellIndex}), and the transitions of a state are compiled
+ * from the slip model when it is backed up for the first time, in the same order as in the compiled model.
+ * Apart from copying the map and finding its GOLD cells, nothing is done per cell of the map.
+ * The returned policy is partial (see {@link ExploredSolution}): it is defined in the solved states only,
+ * which include the start state and every state reachable from it under the policy.
+ * The sweep count of the solution is the number of full-sweep equivalents (backups / cells of the map).
+ */
+public class LrtdpSolver extends Solver {
+
+    private static final long SEED = 1;
+
+    private static final Action[] ACTIONS = Action.values();
+    private static final int STRIDE = CompiledWorldModel.ACTIONS + 1;
+
+    /**
+     * Solves the model from its top-left corner.
+     */
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+        return solve(model, model.index(0, 0));
+    }
+
+    @Override
+    public Solution solve(CompiledWorldModel model, int start) {
+        return new Trials(model.getMap().copy(), model.getSlipModel()).run(start);
+    }
+
+    /**
+     * Solves the map without compiling it.
+     */
+    @Override
+    public Solution solve(GridMap map, int start) {
+        return new Trials(map.copy(), WorldModel.getSlipModel()).run(start);
+    }
+
+    private static class Trials {
+
+        private final GridMap map;
+        private final SlipModel.Compiled slip;
+        private final GoalHeuristic heuristic;
+        private final CellIndex index = new CellIndex();
+
+        // indexed by the ids of the visited cells, grown as the cells are visited
+        private float[] U = new float[64];
+        private boolean[] solved = new boolean[64];
+        private byte[] policy = new byte[64];
+        private int[] stamp = new int[64];
+        private final Random rnd = new Random(SEED);
+
+        // transitions of the expanded states, the ones of the action a of the state s
+        // occupy the range [offsets[s*STRIDE + a], offsets[s*STRIDE + a + 1])
+        private boolean[] expanded = new boolean[64];
+        private int[] offsets = new int[64 * STRIDE];
+        private int[] successors = new int[256];
+        private float[] probabilities = new float[256];
+        private float[] rewards = new float[256];
+        private int transitions;
+
+        // stacks of the trial and of the solved check, stamps mark the states on the check stacks
+        private int[] trial = new int[64];
+        private int[] open = new int[64];
+        private int[] closed = new int[64];
+        private int check;
+
+        private long backups;
+
+        Trials(GridMap map, SlipModel slipModel) {
+            this.map = map;
+            this.slip = slipModel.compile(map);
+            this.heuristic = new GoalHeuristic(map, slip);
+        }
+
+        Solution run(int start) {
+            int s = state(start);
+            while (!solved[s]) {
+                trial(s);
+            }
+
+            int states = index.size();
+            for (int v = 0; v < states; v++) {
+                if (!solved[v]) {
+                    policy[v] = -1;
+                }
+            }
+
+            int cells = map.size();
+            return new ExploredSolution(heuristic, index, Arrays.copyOf(U, states), Arrays.copyOf(policy, states),
+                    (int) ((backups + cells - 1) / cells), backups);
+        }
+
+        private void trial(int s) {
+            int depth = 0;
+
+            // trials are cut off, a trial in a region without gold would never end otherwise
+            while (!solved[s] && depth < MAX_ITERS) {
+                trial = push(trial, depth++, s);
+                if (map.get(index.cell(s)) != CellContent.EMPTY) {
+                    break;
+                }
+                update(s);
+                s = sample(s, policy[s]);
+            }
+
+            while (depth > 0) {
+                if (!checkSolved(trial[--depth])) {
+                    break;
+                }
+            }
+        }
+
+        private boolean checkSolved(int s) {
+            boolean consistent = true;
+            int openSize = 0;
+            int closedSize = 0;
+
+            check++;
+            if (!solved[s]) {
+                open = push(open, openSize++, s);
+                stamp[s] = check;
+            }
+
+            while (openSize > 0) {
+                s = open[--openSize];
+                closed = push(closed, closedSize++, s);
+
+                if (residual(s) >= THRESHOLD) {
+                    consistent = false;
+                    continue;
+                }
+
+                // the residual has expanded the state
+                int pair = s * STRIDE + policy[s];
+                for (int k = offsets[pair]; k < offsets[pair + 1]; k++) {
+                    int succ = successors[k];
+                    if (!solved[succ] && stamp[succ] != check) {
+                        open = push(open, openSize++, succ);
+                        stamp[succ] = check;
+                    }
+                }
+            }
+
+            if (consistent) {
+                for (int i = 0; i < closedSize; i++) {
+                    solved[closed[i]] = true;
+                }
+            } else {
+                while (closedSize > 0) {
+                    update(closed[--closedSize]);
+                }
+            }
+
+            return consistent;
+        }
+
+        /**
+         * Bellman backup of s, stores the greedy action into the policy.
+         */
+        private void update(int s) {
+            // the first backup of a state visits its successors, which may grow the arrays
+            float value = greedy(s);
+            U[s] = value;
+            backups++;
+        }
+
+        /**
+         * @return |max_a Q(s, a) - V(s)|, stores the greedy action into the policy
+         */
+        private float residual(int s) {
+            return Math.abs(greedy(s) - U[s]);
+        }
+
+        private float greedy(int s) {
+            if (map.get(index.cell(s)) != CellContent.EMPTY) {
+                // absorbing state: a self-loop with zero reward for every action
+                policy[s] = 0;
+                return (float) (1f * (0 + GAMMA * U[s]));
+            }
+
+            int base = expand(s);
+            return backup(offsets, base, successors, probabilities, rewards, GAMMA, U, s, policy);
+        }
+
+        /**
+         * Compiles the transitions of the EMPTY state s unless they are compiled already,
+         * their successors are visited.
+         * @return index of the offsets of the state
+         */
+        private int expand(int s) {
+            int base = s * STRIDE;
+            if (expanded[s]) {
+                return base;
+            }
+
+            int cell = index.cell(s);
+            int first = transitions;
+            for (Action a : ACTIONS) {
+                for (int m = slip.begin(cell, a); m < slip.end(cell, a); m++) {
+                    int target = slip.target(cell, m);
+                    // visiting the target may grow the arrays of the states
+                    int succ = state(target);
+                    if (transitions == successors.length) {
+                        successors = Arrays.copyOf(successors, 2 * transitions);
+                        probabilities = Arrays.copyOf(probabilities, 2 * transitions);
+                        rewards = Arrays.copyOf(rewards, 2 * transitions);
+                    }
+                    successors[transitions] = succ;
+                    probabilities[transitions] = slip.probability(m);
+                    rewards[transitions] = WorldModel.reward(map.get(target));
+                    transitions++;
+                }
+            }
+
+            int k = first;
+            for (Action a : ACTIONS) {
+                offsets[base + a.ordinal()] = k;
+                k += slip.end(cell, a) - slip.begin(cell, a);
+            }
+            offsets[base + CompiledWorldModel.ACTIONS] = k;
+            expanded[s] = true;
+            return base;
+        }
+
+        /**
+         * @return id of the state of the cell, on the first visit its value is initialized by the heuristic
+         */
+        private int state(int cell) {
+            int s = index.id(cell);
+            if (s >= 0) {
+                return s;
+            }
+            s = index.add(cell);
+            if (s == U.length) {
+                U = Arrays.copyOf(U, 2 * s);
+                solved = Arrays.copyOf(solved, 2 * s);
+                policy = Arrays.copyOf(policy, 2 * s);
+                stamp = Arrays.copyOf(stamp, 2 * s);
+                expanded = Arrays.copyOf(expanded, 2 * s);
+                offsets = Arrays.copyOf(offsets, 2 * s * STRIDE);
+            }
+            U[s] = heuristic.value(cell);
+            // absorbing states have the exact value 0
+            solved[s] = map.get(cell) != CellContent.EMPTY;
+            return s;
+        }
+
+        private int sample(int s, int a) {
+            float r = rnd.nextFloat();
+            int end = offsets[s * STRIDE + a + 1];
+            for (int k = offsets[s * STRIDE + a]; k < end; k++) {
+                r -= probabilities[k];
+                if (r < 0) {
+                    return successors[k];
+                }
+            }
+            return successors[end - 1];
+        }
+
+        private static int[] push(int[] stack, int size, int s) {
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, 2 * size);
+            }
+            stack[size] = s;
+            return stack;
+        }
+
+    }
+
+}
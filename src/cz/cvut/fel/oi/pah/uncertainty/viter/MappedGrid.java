@@ -0,0 +1,164 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Row-major grid of floats or bytes stored in a memory-mapped file.
+ *
+ * A single mapping is limited to 2GB, so the file is mapped in chunks of whole rows
+ * (at most {@link #CHUNK_SIZE} bytes each), and a row never spans two chunks.
+ * Whole rows are read and written in bulk, so the grid is streamed row by row.
+ * The bulk operations are not thread-safe, the single element reads are.
+ *
+ * The grid holds no file descriptor: the channel is closed as soon as the file is mapped,
+ * the mapping stays valid until it is garbage collected. A temporary file is deleted right
+ * after it is mapped where the platform allows it, otherwise when the grid is closed.
+ */
+class MappedGrid implements Closeable {
+
+    static final int CHUNK_SIZE = 1 << 30;
+
+    private Path file;
+    private final int cols;
+    private final int rows;
+    private final int rowsPerChunk;
+
+    private final ByteBuffer[] chunks;
+    private final FloatBuffer[] floats;
+
+    private MappedGrid(Path file, FileChannel channel, long position, int cols, int rows, int elementSize,
+            FileChannel.MapMode mode, ByteOrder order) throws IOException {
+        this.file = file;
+        this.cols = cols;
+        this.rows = rows;
+
+        long rowSize = (long) cols * elementSize;
+        if (rowSize > CHUNK_SIZE) {
+            throw new IllegalArgumentException("row of " + cols + " elements does not fit a chunk");
+        }
+        rowsPerChunk = (int) Math.max(1, Math.min(rows, CHUNK_SIZE / Math.max(1, rowSize)));
+
+        int count = (rows + rowsPerChunk - 1) / rowsPerChunk;
+        chunks = new ByteBuffer[count];
+        floats = elementSize == 4 ? new FloatBuffer[count] : null;
+        for (int c = 0; c < count; c++) {
+            int chunkRows = Math.min(rowsPerChunk, rows - c * rowsPerChunk);
+            MappedByteBuffer chunk = channel.map(mode, position + c * rowsPerChunk * rowSize, chunkRows * rowSize);
+            chunk.order(order);
+            chunks[c] = chunk;
+            if (floats != null) {
+                floats[c] = chunk.asFloatBuffer();
+            }
+        }
+    }
+
+    /**
+     * Maps a region of an existing file read-only, starting at the given position.
+     * The region stays mapped after the channel is closed, the file is never deleted by the grid.
+     * @param order byte order the elements were written in
+     */
+    static MappedGrid readOnly(FileChannel channel, long position, int cols, int rows, int elementSize,
+            ByteOrder order) throws IOException {
+        return new MappedGrid(null, channel, position, cols, rows, elementSize, FileChannel.MapMode.READ_ONLY, order);
+    }
+
+    /**
+     * Creates a grid in a temporary file of the directory and maps it read-write.
+     * The file is deleted once mapped, or when the grid is closed if the platform
+     * does not allow deleting a mapped file.
+     * @param elementSize size of an element in bytes, 4 for floats, 1 for bytes
+     */
+    static MappedGrid createTemp(Path directory, String prefix, int cols, int rows, int elementSize) throws IOException {
+        Path file = Files.createTempFile(directory, prefix, ".grid");
+        MappedGrid grid;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            grid = new MappedGrid(file, channel, 0, cols, rows, elementSize, FileChannel.MapMode.READ_WRITE,
+                    ByteOrder.nativeOrder());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        try {
+            Files.delete(file);
+            grid.file = null;
+        } catch (IOException e) {
+            // the file is mapped, e.g. on Windows, it is deleted when the grid is closed
+            file.toFile().deleteOnExit();
+        }
+        return grid;
+    }
+
+    int getCols() {
+        return cols;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    float getFloat(int x, int y) {
+        return floats[y / rowsPerChunk].get((y % rowsPerChunk) * cols + x);
+    }
+
+    byte getByte(int x, int y) {
+        return chunks[y / rowsPerChunk].get((y % rowsPerChunk) * cols + x);
+    }
+
+    /**
+     * Reads the row y into dst[offset .. offset + cols).
+     */
+    void readRow(int y, float[] dst, int offset) {
+        FloatBuffer chunk = floats[y / rowsPerChunk];
+        chunk.position((y % rowsPerChunk) * cols);
+        chunk.get(dst, offset, cols);
+    }
+
+    /**
+     * Writes src[offset .. offset + cols) into the row y.
+     */
+    void writeRow(int y, float[] src, int offset) {
+        FloatBuffer chunk = floats[y / rowsPerChunk];
+        chunk.position((y % rowsPerChunk) * cols);
+        chunk.put(src, offset, cols);
+    }
+
+    /**
+     * Reads the row y into dst[offset .. offset + cols).
+     */
+    void readRow(int y, byte[] dst, int offset) {
+        ByteBuffer chunk = chunks[y / rowsPerChunk];
+        chunk.position((y % rowsPerChunk) * cols);
+        chunk.get(dst, offset, cols);
+    }
+
+    /**
+     * Writes src[offset .. offset + cols) into the row y.
+     */
+    void writeRow(int y, byte[] src, int offset) {
+        ByteBuffer chunk = chunks[y / rowsPerChunk];
+        chunk.position((y % rowsPerChunk) * cols);
+        chunk.put(src, offset, cols);
+    }
+
+    /**
+     * Deletes the temporary file if it could not be deleted when it was mapped.
+     * The mapping itself is released by the garbage collector.
+     */
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file);
+            file = null;
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+
+/**
+ * Solution whose value function and policy are stored in memory-mapped files
+ * instead of the heap, see {@link MappedGrid}.
+ *
+ * The mappings live as long as the solution does, no file stays open. The temporary files
+ * of a solver are deleted as soon as they are mapped, a {@link SolutionSnapshot} is mapped
+ * read-only and kept.
+ * {@link #getPolicy()} and {@link #getValueFunction()} still materialize the whole grid
+ * on the heap, the agents query single cells through {@link #action(int, int)} instead.
+ */
+class MappedSolution extends Solution {
+
+    private final MappedGrid mappedValues;
+    private final MappedGrid mappedActions;
+
+    MappedSolution(MappedGrid values, MappedGrid actions, int sweeps, long backups) {
+        super(values.getCols(), values.getRows(), null, null, sweeps, backups);
+        this.mappedValues = values;
+        this.mappedActions = actions;
+    }
+
+    @Override
+    public float value(int x, int y) {
+        return mappedValues.getFloat(x, y);
+    }
+
+    @Override
+    public Action action(int x, int y) {
+        byte action = mappedActions.getByte(x, y);
+        return action >= 0 ? Action.values()[action] : null;
+    }
+
+    @Override
+    float[] copyValues() {
+        float[] values = new float[cols * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                values[y * cols + x] = mappedValues.getFloat(x, y);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    byte[] copyActions() {
+        byte[] actions = new byte[cols * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                actions[y * cols + x] = mappedActions.getByte(x, y);
+            }
+        }
+        return actions;
+    }
+
+}
@@ -0,0 +1,521 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Coarse-to-fine (multigrid) value iteration.
+ *
+ * A sweep of value iteration spreads the value of GOLD by one cell only, so the residual stays above
+ * THRESHOLD until the discounted gold has reached every cell it still changes by more than that.
+ * The solver attacks this from two sides:
+ *
+ * - The initial value function of the finest level is prolonged from a hierarchy of maps, each one
+ * aggregating 2x2 blocks of the finer one. The coarsest map is solved, each finer one is refined
+ * by a few sweeps. A step on level l moves by b = 2^l cells, so the level uses the discount gamma^b and
+ * the discounted reward of b steps.
+ *
+ * - Every few sweeps of the finest level, the error of the value function of the greedy policy is
+ * corrected on the same hierarchy of blocks (see {@link Correction}): a correction carries
+ * the change of the values across the whole map at once, the sweeps move it by one cell per sweep.
+ * The correction is constant on the blocks, so the next sweep may see a larger residual at their edges,
+ * which the following sweeps smooth out. A correction that increases the residual more than
+ * {@link #RESIDUAL_GROWTH} times (e.g. while the greedy policy is still far from optimal)
+ * is undone and the sweep repeated without it.
+ *
+ * The finest level is iterated until the residual of a sweep drops below THRESHOLD, which gives the same
+ * guarantee as {@link ValueIterationSolver} from any value function. The sweep count of the solution
+ * is the number of sweeps of the finest level, the backups include the sweeps of all levels.
+ */
+public class MultigridSolver extends Solver {
+
+    static final int DEFAULT_SWEEPS = 8;
+
+    /**
+     * The hierarchy ends with a level whose larger dimension is at most this size.
+     */
+    static final int COARSEST_SIZE = 8;
+
+    /**
+     * Number of the sweeps of the finest level between two corrections.
+     */
+    static final int CORRECTION_INTERVAL = 4;
+
+    /**
+     * A correction is undone if the residual of the next sweep is this many times larger than before it.
+     */
+    static final double RESIDUAL_GROWTH = 4;
+
+    private final int sweeps;
+
+    public MultigridSolver() {
+        this(DEFAULT_SWEEPS);
+    }
+
+    /**
+     * @param sweeps number of sweeps refining each level but the coarsest and the finest one
+     */
+    public MultigridSolver(int sweeps) {
+        if (sweeps < 1) {
+            throw new IllegalArgumentException("sweeps must be positive");
+        }
+        this.sweeps = sweeps;
+    }
+
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+
+        // the classes of cells of the slip model do not exist on the coarse maps
+        SlipModel slipModel = model.getSlipModel().classes() == 1 ? model.getSlipModel() : SlipModel.STANDARD;
+
+        List<CompiledWorldModel> levels = new ArrayList<>();
+        levels.add(model);
+        GridMap map = model.getMap();
+        while (Math.max(map.getCols(), map.getRows()) > COARSEST_SIZE) {
+            map = coarsen(map);
+            // the coarse models must not evict the model of the environment from the cache
+            levels.add(WorldModel.build(map, slipModel));
+        }
+
+        long backups = 0;
+        float[] U = null;
+
+        for (int l = levels.size() - 1; l > 0; l--) {
+            CompiledWorldModel level = levels.get(l);
+            int block = 1 << l;
+
+            U = U == null ? new float[level.states()] : prolong(levels.get(l + 1), U, level);
+            int i = iterate(level, rewards(level, block), Math.pow(GAMMA, block), U, new byte[level.states()],
+                    l == levels.size() - 1 ? MAX_ITERS : sweeps);
+            backups += (long) i * level.states();
+        }
+
+        int states = model.states();
+        U = levels.size() > 1 ? prolong(levels.get(1), U, model) : new float[states];
+        byte[] policy = new byte[states];
+
+        Correction correction = new Correction(model);
+        float[] newU = new float[states];
+        float[] saved = null;
+        double corrected = Double.NaN;
+
+        int i = 0;
+        double delta;
+
+        do {
+
+            i++;
+            delta = sweep(model, U, newU, policy);
+
+            if (delta > RESIDUAL_GROWTH * corrected) {
+                // the last correction made the value function worse, repeat the sweep without it
+                System.arraycopy(saved, 0, U, 0, states);
+                i++;
+                delta = sweep(model, U, newU, policy);
+            }
+            corrected = Double.NaN;
+
+            if (delta >= THRESHOLD && i % CORRECTION_INTERVAL == 0) {
+                if (saved == null) {
+                    saved = new float[states];
+                }
+                System.arraycopy(newU, 0, saved, 0, states);
+                backups += correction.correct(U, newU, policy);
+                corrected = delta;
+            }
+
+            float[] tmp = U;
+            U = newU;
+            newU = tmp;
+
+        } while (delta >= THRESHOLD && i < MAX_ITERS);
+
+        backups += (long) i * states;
+
+        return new Solution(model, U, policy, i, backups);
+    }
+
+    /**
+     * Jacobi sweep of the finest level, newU = T(U).
+     * @return residual of the sweep
+     */
+    private static double sweep(CompiledWorldModel model, float[] U, float[] newU, byte[] policy) {
+        double delta = 0.0;
+        for (int s = 0; s < U.length; s++) {
+            newU[s] = backup(model, U, s, policy);
+            double diff = Math.abs(newU[s] - U[s]);
+            if (diff > delta) {
+                delta = diff;
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Aggregates 2x2 blocks of the map into single cells. A block is GOLD if it contains GOLD,
+     * otherwise EMPTY if it contains an EMPTY cell (the pits next to a path are ignored),
+     * otherwise PIT if it contains a PIT and an OBSTACLE if it is all obstacles.
+     */
+    static GridMap coarsen(GridMap map) {
+        GridMap coarse = new GridMap((map.getCols() + 1) / 2, (map.getRows() + 1) / 2);
+        for (int y = 0; y < coarse.getRows(); y++) {
+            for (int x = 0; x < coarse.getCols(); x++) {
+                CellContent content = CellContent.OBSTACLE;
+                for (int dy = 0; dy < 2; dy++) {
+                    for (int dx = 0; dx < 2; dx++) {
+                        if (map.contains(2 * x + dx, 2 * y + dy)) {
+                            content = merge(content, map.get(2 * x + dx, 2 * y + dy));
+                        }
+                    }
+                }
+                coarse.set(x, y, content);
+            }
+        }
+        return coarse;
+    }
+
+    private static CellContent merge(CellContent a, CellContent b) {
+        if (a == CellContent.GOLD || b == CellContent.GOLD) {
+            return CellContent.GOLD;
+        }
+        if (a == CellContent.EMPTY || b == CellContent.EMPTY) {
+            return CellContent.EMPTY;
+        }
+        if (a == CellContent.PIT || b == CellContent.PIT) {
+            return CellContent.PIT;
+        }
+        return CellContent.OBSTACLE;
+    }
+
+    /**
+     * @return value function of the fine level given by the value of the block of each cell,
+     * the absorbing cells have the exact value 0
+     */
+    private static float[] prolong(CompiledWorldModel coarse, float[] coarseU, CompiledWorldModel fine) {
+        float[] U = new float[fine.states()];
+        for (int s = 0; s < U.length; s++) {
+            if (fine.content(s) == CellContent.EMPTY) {
+                U[s] = coarseU[coarse.index(fine.x(s) / 2, fine.y(s) / 2)];
+            }
+        }
+        return U;
+    }
+
+    /**
+     * @return rewards of the transitions of a level whose step moves by the given number of cells:
+     * -1 for each but the last step, which receives the reward of the target cell
+     */
+    private static float[] rewards(CompiledWorldModel level, int block) {
+        double discount = Math.pow(GAMMA, block - 1);
+        double steps = (1 - discount) / (1 - GAMMA);
+
+        float[] rewards = new float[level.rewards.length];
+        for (int s = 0; s < level.states(); s++) {
+            if (level.content(s) == CellContent.EMPTY) {
+                int end = level.offsets[(s + 1) * CompiledWorldModel.ACTIONS];
+                for (int k = level.offsets[s * CompiledWorldModel.ACTIONS]; k < end; k++) {
+                    rewards[k] = (float) (-steps + discount * level.rewards[k]);
+                }
+            }
+        }
+        return rewards;
+    }
+
+    /**
+     * Jacobi sweeps of a coarse level from the value function U until the residual drops below THRESHOLD
+     * or the number of sweeps reaches the limit. The result is stored into U.
+     * @return number of sweeps
+     */
+    private static int iterate(CompiledWorldModel model, float[] rewards, double gamma,
+            float[] U, byte[] policy, int limit) {
+
+        int states = model.states();
+        int[] offsets = model.offsets;
+        int[] successors = model.successors;
+        float[] probabilities = model.probabilities;
+        int actions = CompiledWorldModel.ACTIONS;
+
+        float[] current = U;
+        float[] next = new float[states];
+
+        int i = 0;
+        double delta;
+
+        do {
+
+            i++;
+            delta = 0.0;
+
+            for (int s = 0; s < states; s++) {
+
+                next[s] = backup(offsets, s * actions, successors, probabilities, rewards, gamma, current, s, policy);
+
+                double diff = Math.abs(next[s] - current[s]);
+                if (diff > delta) {
+                    delta = diff;
+                }
+
+            }
+
+            float[] tmp = current;
+            current = next;
+            next = tmp;
+
+        } while (delta >= THRESHOLD && i < limit);
+
+        if (current != U) {
+            System.arraycopy(current, 0, U, 0, states);
+        }
+        return i;
+    }
+
+    /**
+     * Coarse-grid correction of the finest level.
+     *
+     * After the sweep newU = T(U) with the greedy policy pi, the value of pi is newU + e, where e solves
+     * the linear system e = gamma P_pi (e + newU - U) over the EMPTY states (the absorbing ones have
+     * the exact value 0). The system is a 9-point stencil on the grid, since every move ends
+     * in the 8-neighbourhood, and it is solved approximately by one V-cycle of an aggregation multigrid:
+     * Gauss-Seidel smoothing on each level, the residual averaged over the 2x2 blocks is solved on
+     * the coarser level, whose operator averages the rows of the block, and the coarse solution is added
+     * to all cells of the block.
+     */
+    static class Correction {
+
+        static final int SMOOTHING = 2;
+
+        /**
+         * The coarsest level is solved by this many Gauss-Seidel sweeps.
+         */
+        static final int COARSEST_SWEEPS = 100;
+
+        private final CompiledWorldModel model;
+
+        // levels of the V-cycle, the first one is the finest level
+        private final List<Stencil> levels = new ArrayList<>();
+
+        Correction(CompiledWorldModel model) {
+            this.model = model;
+            Stencil level = new Stencil(model.getCols(), model.getRows());
+            levels.add(level);
+            while (Math.max(level.cols, level.rows) > COARSEST_SIZE) {
+                level = new Stencil((level.cols + 1) / 2, (level.rows + 1) / 2);
+                levels.add(level);
+            }
+        }
+
+        /**
+         * Adds the correction of the policy to newU.
+         * @return number of the cell updates of all levels
+         */
+        long correct(float[] U, float[] newU, byte[] policy) {
+            Stencil fine = levels.get(0);
+            fine.assemble(model, policy);
+
+            // right-hand side gamma P_pi (newU - U)
+            float[] r = fine.x;
+            for (int s = 0; s < r.length; s++) {
+                r[s] = newU[s] - U[s];
+            }
+            fine.multiply(r, fine.f);
+
+            for (int l = 1; l < levels.size(); l++) {
+                levels.get(l).coarsen(levels.get(l - 1));
+            }
+
+            Arrays.fill(fine.x, 0f);
+            long updates = vcycle(0);
+
+            for (int s = 0; s < newU.length; s++) {
+                newU[s] += fine.x[s];
+            }
+            return updates;
+        }
+
+        private long vcycle(int l) {
+            Stencil level = levels.get(l);
+            int cells = level.cols * level.rows;
+            if (l == levels.size() - 1) {
+                level.smooth(COARSEST_SWEEPS);
+                return (long) COARSEST_SWEEPS * cells;
+            }
+
+            Stencil coarse = levels.get(l + 1);
+            level.smooth(SMOOTHING);
+            level.restrictResidual(coarse);
+            Arrays.fill(coarse.x, 0f);
+            long updates = vcycle(l + 1);
+            level.addCoarse(coarse);
+            level.smooth(SMOOTHING);
+            return updates + (2L * SMOOTHING + 2) * cells;
+        }
+
+    }
+
+    /**
+     * Linear system x = M x + f over the active cells of a grid, M is a 9-point stencil:
+     * the coefficient of the neighbour (x + dx, y + dy) of the cell s is m[s*9 + (dy + 1)*3 + dx + 1].
+     */
+    static class Stencil {
+
+        final int cols;
+        final int rows;
+        final float[] m;
+        final boolean[] active;
+        final int[] count;
+        final float[] x;
+        final float[] f;
+
+        Stencil(int cols, int rows) {
+            this.cols = cols;
+            this.rows = rows;
+            this.m = new float[cols * rows * 9];
+            this.active = new boolean[cols * rows];
+            this.count = new int[cols * rows];
+            this.x = new float[cols * rows];
+            this.f = new float[cols * rows];
+        }
+
+        /**
+         * M = gamma P_pi restricted to the EMPTY states of the model.
+         */
+        void assemble(CompiledWorldModel model, byte[] policy) {
+            Arrays.fill(m, 0f);
+            for (int s = 0; s < active.length; s++) {
+                active[s] = model.content(s) == CellContent.EMPTY;
+                if (!active[s]) {
+                    continue;
+                }
+                int x = model.x(s);
+                int y = model.y(s);
+                int pair = s * CompiledWorldModel.ACTIONS + policy[s];
+                for (int k = model.offsets[pair]; k < model.offsets[pair + 1]; k++) {
+                    int t = model.successors[k];
+                    if (model.content(t) == CellContent.EMPTY) {
+                        int d = (model.y(t) - y + 1) * 3 + model.x(t) - x + 1;
+                        m[s * 9 + d] += (float) (GAMMA * model.probabilities[k]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Galerkin operator of the finer level: the rows of the cells of each block are averaged
+         * and their coefficients summed by the blocks of the neighbours.
+         */
+        void coarsen(Stencil fine) {
+            Arrays.fill(m, 0f);
+            Arrays.fill(active, false);
+            Arrays.fill(count, 0);
+            for (int y = 0; y < fine.rows; y++) {
+                for (int x = 0; x < fine.cols; x++) {
+                    int s = y * fine.cols + x;
+                    if (!fine.active[s]) {
+                        continue;
+                    }
+                    int b = (y / 2) * cols + x / 2;
+                    active[b] = true;
+                    count[b]++;
+                    for (int d = 0; d < 9; d++) {
+                        float p = fine.m[s * 9 + d];
+                        if (p != 0) {
+                            int bx = (x + d % 3 - 1) / 2 - x / 2;
+                            int by = (y + d / 3 - 1) / 2 - y / 2;
+                            m[b * 9 + (by + 1) * 3 + bx + 1] += p;
+                        }
+                    }
+                }
+            }
+            for (int b = 0; b < count.length; b++) {
+                if (count[b] > 1) {
+                    for (int d = 0; d < 9; d++) {
+                        m[b * 9 + d] /= count[b];
+                    }
+                }
+            }
+        }
+
+        /**
+         * result = M v
+         */
+        void multiply(float[] v, float[] result) {
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    int s = y * cols + x;
+                    result[s] = active[s] ? (float) offDiagonal(v, x, y) + m[s * 9 + 4] * v[s] : 0f;
+                }
+            }
+        }
+
+        /**
+         * In-place Gauss-Seidel sweeps solving each row for its own cell.
+         */
+        void smooth(int sweeps) {
+            for (int i = 0; i < sweeps; i++) {
+                for (int y = 0; y < rows; y++) {
+                    for (int x = 0; x < cols; x++) {
+                        int s = y * cols + x;
+                        if (active[s]) {
+                            this.x[s] = (float) ((f[s] + offDiagonal(this.x, x, y)) / (1 - m[s * 9 + 4]));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Stores the residual M x + f - x averaged over the blocks into the right-hand side of the coarse level.
+         */
+        void restrictResidual(Stencil coarse) {
+            Arrays.fill(coarse.f, 0f);
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    int s = y * cols + x;
+                    if (active[s]) {
+                        double residual = f[s] + offDiagonal(this.x, x, y) + (m[s * 9 + 4] - 1) * this.x[s];
+                        int b = (y / 2) * coarse.cols + x / 2;
+                        coarse.f[b] += (float) (residual / coarse.count[b]);
+                    }
+                }
+            }
+        }
+
+        void addCoarse(Stencil coarse) {
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    int s = y * cols + x;
+                    if (active[s]) {
+                        this.x[s] += coarse.x[(y / 2) * coarse.cols + x / 2];
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return sum of the coefficients of the neighbours of the cell times their values in v
+         */
+        private double offDiagonal(float[] v, int x, int y) {
+            int s = y * cols + x;
+            double sum = 0.0;
+            for (int d = 0; d < 9; d++) {
+                float p = m[s * 9 + d];
+                if (p != 0 && d != 4) {
+                    sum += p * v[(y + d / 3 - 1) * cols + x + d % 3 - 1];
+                }
+            }
+            return sum;
+        }
+
+    }
+
+    @Override
+    public String getConfiguration() {
+        return super.getConfiguration() + "(sweeps = " + sweeps + ")";
+    }
+
+}
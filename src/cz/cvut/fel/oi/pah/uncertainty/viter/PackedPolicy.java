@@ -0,0 +1,74 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+
+/**
+ * Policy packed into two bits per cell (the ordinal of the action), i.e. 32 cells per long,
+ * in row-major order. The cells of a partial policy that are undefined are marked in a separate
+ * bit mask, which is not allocated for a policy defined everywhere.
+ *
+ * A lookup is a shift and a mask.
+ */
+public class PackedPolicy implements Policy {
+
+    private static final Action[] ACTIONS = Action.values();
+
+    private final int cols;
+    private final int rows;
+    private final long[] bits;
+    private final long[] undefined;
+
+    /**
+     * @param policy the policy to pack
+     */
+    public PackedPolicy(Policy policy) {
+        this.cols = policy.getCols();
+        this.rows = policy.getRows();
+        long cells = (long) cols * rows;
+        this.bits = new long[(int) ((cells + 31) >>> 5)];
+
+        long[] mask = null;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                int i = y * cols + x;
+                Action action = policy.action(x, y);
+                if (action != null) {
+                    bits[i >>> 5] |= (long) action.ordinal() << ((i & 31) << 1);
+                } else {
+                    if (mask == null) {
+                        mask = new long[(int) ((cells + 63) >>> 6)];
+                    }
+                    mask[i >>> 6] |= 1L << (i & 63);
+                }
+            }
+        }
+        this.undefined = mask;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public Action action(int x, int y) {
+        int i = y * cols + x;
+        if (undefined != null && (undefined[i >>> 6] & (1L << (i & 63))) != 0) {
+            return null;
+        }
+        return ACTIONS[(int) (bits[i >>> 5] >>> ((i & 31) << 1)) & 3];
+    }
+
+    /**
+     * @return approximate size of the packed arrays in bytes
+     */
+    public long getBytes() {
+        return 8L * (bits.length + (undefined != null ? undefined.length : 0));
+    }
+
+}
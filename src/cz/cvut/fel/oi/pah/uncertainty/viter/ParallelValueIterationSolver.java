@@ -0,0 +1,149 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Synchronous value iteration with each sweep split into tiles of the grid processed on a ForkJoinPool.
+ *
+ * Sweeps are double-buffered, i.e. every tile reads the values of the previous sweep only,
+ * and the residual is reduced per tile and then merged, so the result does not depend on
+ * the scheduling and is identical to the one of {@link ValueIterationSolver}.
+ */
+public class ParallelValueIterationSolver extends Solver {
+
+    static final int DEFAULT_TILE_SIZE = 64;
+
+    private final int threads;
+    private final int tileSize;
+
+    public ParallelValueIterationSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads parallelism of the pool the sweeps run on
+     */
+    public ParallelValueIterationSolver(int threads) {
+        this(threads, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * @param threads parallelism of the pool the sweeps run on
+     * @param tileSize edge length of the square tiles the grid is split into
+     */
+    public ParallelValueIterationSolver(int threads, int tileSize) {
+        if (threads < 1 || tileSize < 1) {
+            throw new IllegalArgumentException("threads and tile size must be positive");
+        }
+        this.threads = threads;
+        this.tileSize = tileSize;
+    }
+
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+
+        int states = model.states();
+        int tilesX = (model.getCols() + tileSize - 1) / tileSize;
+        int tilesY = (model.getRows() + tileSize - 1) / tileSize;
+
+        float[] U = new float[states];
+        float[] newU = new float[states];
+        byte[] policy = new byte[states];
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        int i = 0;
+        double delta;
+
+        try {
+            do {
+
+                i++;
+
+                float[] tmp = U;
+                U = newU;
+                newU = tmp;
+
+                delta = pool.invoke(new Sweep(model, U, newU, policy, tilesX, 0, tilesX * tilesY));
+
+            } while (delta >= THRESHOLD && i < MAX_ITERS);
+        } finally {
+            pool.shutdown();
+        }
+
+        return new Solution(model, newU, policy, i, (long) i * states);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + threads + " threads, " + tileSize + "x" + tileSize + " tiles)";
+    }
+
+    /**
+     * Sweep over the tiles [from, to), returns the max residual of these tiles.
+     */
+    private class Sweep extends RecursiveTask<Double> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledWorldModel model;
+        private final float[] U;
+        private final float[] newU;
+        private final byte[] policy;
+        private final int tilesX;
+        private final int from;
+        private final int to;
+
+        Sweep(CompiledWorldModel model, float[] U, float[] newU, byte[] policy, int tilesX, int from, int to) {
+            this.model = model;
+            this.U = U;
+            this.newU = newU;
+            this.policy = policy;
+            this.tilesX = tilesX;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                Sweep left = new Sweep(model, U, newU, policy, tilesX, from, mid);
+                Sweep right = new Sweep(model, U, newU, policy, tilesX, mid, to);
+                left.fork();
+                double rightDelta = right.compute();
+                return Math.max(left.join(), rightDelta);
+            }
+            return sweepTile(from % tilesX, from / tilesX);
+        }
+
+        private double sweepTile(int tileX, int tileY) {
+            int x0 = tileX * tileSize;
+            int y0 = tileY * tileSize;
+            int x1 = Math.min(x0 + tileSize, model.getCols());
+            int y1 = Math.min(y0 + tileSize, model.getRows());
+
+            double delta = 0.0;
+
+            for (int y = y0; y < y1; y++) {
+                for (int s = model.index(x0, y), end = model.index(x1 - 1, y); s <= end; s++) {
+                    newU[s] = backup(model, U, s, policy);
+
+                    double diff = Math.abs(newU[s] - U[s]);
+                    if (diff > delta) {
+                        delta = diff;
+                    }
+                }
+            }
+
+            return delta;
+        }
+
+    }
+
+}
@@ -0,0 +1,21 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+
+/**
+ * Read-only policy over the cells of a map.
+ *
+ * A policy may be partial, i.e. undefined in some cells.
+ */
+public interface Policy {
+
+    int getCols();
+
+    int getRows();
+
+    /**
+     * @return the action of the policy in the given cell, null if the policy is not defined there
+     */
+    Action action(int x, int y);
+
+}
@@ -0,0 +1,138 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Bounded LRU cache of policies shared across agent instances.
+ *
+ * Policies are keyed by the contents of the map and the parameters of the solver
+ * (its configuration, see {@link Solver#getConfiguration()}, GAMMA, EPSILON and the fingerprint
+ * of the slip model compiled for the map), so an identical map is solved only once.
+ * Only the policy of a solution is kept, compressed by {@link RunLengthPolicy#compress(Policy)},
+ * the value function is dropped.
+ */
+public class PolicyCache {
+
+    static final int DEFAULT_CAPACITY = 16;
+
+    private static final PolicyCache SHARED = new PolicyCache(DEFAULT_CAPACITY);
+
+    private final Map<Key, Policy> entries;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity maximal number of cached policies
+     */
+    public PolicyCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.entries = new LinkedHashMap<Key, Policy>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Policy> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the cache shared by all agents that do not specify their own
+     */
+    public static PolicyCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * @return cached policy of the map by the solver, null if there is none
+     */
+    public synchronized Policy get(GridMap map, Solver solver) {
+        Policy policy = entries.get(new Key(map, solver));
+        if (policy != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return policy;
+    }
+
+    /**
+     * Caches the policy of the map, compressed unless it is already.
+     */
+    public void put(GridMap map, Solver solver, Policy policy) {
+        Policy compressed = policy instanceof RunLengthPolicy || policy instanceof PackedPolicy
+                ? policy : RunLengthPolicy.compress(policy);
+        synchronized (this) {
+            entries.put(new Key(map, solver), compressed);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PolicyCache(" + entries.size() + " entries, " + hits + " hits, " + misses + " misses)";
+    }
+
+    private static class Key {
+
+        private final long fingerprint;
+        private final GridMap map;
+        private final String solver;
+        private final double gamma;
+        private final double epsilon;
+        private final long slip;
+
+        Key(GridMap map, Solver solver) {
+            this.fingerprint = WorldModel.fingerprint(map);
+            this.map = map.copy();
+            this.solver = solver.getConfiguration();
+            this.gamma = Solver.GAMMA;
+            this.epsilon = Solver.EPSILON;
+            this.slip = WorldModel.getSlipModel().compile(map).fingerprint();
+        }
+
+        @Override
+        public int hashCode() {
+            long hash = fingerprint * 31 + slip;
+            return (int) (hash ^ (hash >>> 32)) * 31 + solver.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return fingerprint == other.fingerprint
+                    && gamma == other.gamma
+                    && epsilon == other.epsilon
+                    && solver.equals(other.solver)
+                    && slip == other.slip
+                    && map.equals(other.map);
+        }
+
+    }
+
+}
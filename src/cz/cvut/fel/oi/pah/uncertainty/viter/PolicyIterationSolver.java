@@ -0,0 +1,135 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+/**
+ * (Modified) policy iteration.
+ *
+ * Alternates policy evaluation, starting with the initial policy (NORTH in all states):
+ *
+ * V(s) = Q(s, pi(s))
+ *
+ * and policy improvement, i.e. a Bellman backup of all states that keeps the current
+ * action unless another one is strictly better.
+ *
+ * Policy iteration evaluates each policy to convergence and stops when the improvement keeps the policy
+ * and its residual is below the value iteration threshold.
+ * Modified policy iteration runs only k evaluation sweeps per improvement step and stops when
+ * the residual of the improvement step drops below the value iteration threshold.
+ * Evaluation sweeps are in place, in the goal-outward order of {@link GaussSeidelSolver}.
+ */
+public class PolicyIterationSolver extends Solver {
+
+    private final int k;
+
+    /**
+     * Policy iteration with full policy evaluation.
+     */
+    public PolicyIterationSolver() {
+        this(0);
+    }
+
+    /**
+     * @param k number of evaluation sweeps per improvement step (modified policy iteration),
+     * 0 for evaluation to convergence (policy iteration)
+     */
+    public PolicyIterationSolver(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("number of evaluation sweeps must not be negative");
+        }
+        this.k = k;
+    }
+
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+
+        int states = model.states();
+        int[] order = GaussSeidelSolver.goalOutwardOrder(model);
+
+        float[] U = new float[states];
+        float[] newU = new float[states];
+        byte[] policy = new byte[states];
+
+        int improvements = 0;
+        int sweeps = 0;
+
+        while (improvements < MAX_ITERS) {
+
+            // policy evaluation, the first one evaluates the initial policy (all NORTH)
+            int evaluations = 0;
+            double delta;
+            do {
+                evaluations++;
+                sweeps++;
+                delta = 0.0;
+
+                for (int s : order) {
+                    float value = q(model, U, s, policy[s]);
+
+                    double diff = Math.abs(value - U[s]);
+                    if (diff > delta) {
+                        delta = diff;
+                    }
+
+                    U[s] = value;
+                }
+            } while (k == 0 ? delta >= THRESHOLD && evaluations < MAX_ITERS : evaluations < k);
+
+            // policy improvement
+            improvements++;
+            sweeps++;
+
+            boolean stable = true;
+            delta = 0.0;
+
+            for (int s = 0; s < states; s++) {
+
+                int maxAction = policy[s];
+                float maxQ = q(model, U, s, maxAction);
+
+                for (int a = 0; a < CompiledWorldModel.ACTIONS; a++) {
+                    float Q = q(model, U, s, a);
+                    if (Q > maxQ) {
+                        maxQ = Q;
+                        maxAction = a;
+                    }
+                }
+
+                if (maxAction != policy[s]) {
+                    policy[s] = (byte) maxAction;
+                    stable = false;
+                }
+
+                newU[s] = maxQ;
+
+                double diff = Math.abs(newU[s] - U[s]);
+                if (diff > delta) {
+                    delta = diff;
+                }
+
+            }
+
+            float[] tmp = U;
+            U = newU;
+            newU = tmp;
+
+            // a stable policy is greedy with respect to its own value, which was evaluated above,
+            // the residual bounds the error of the value as in value iteration
+            if (k == 0 ? stable && delta < THRESHOLD : delta < THRESHOLD) {
+                break;
+            }
+
+        }
+
+        return new Solution(model, U, policy, sweeps, (long) sweeps * states);
+    }
+
+    @Override
+    public String getConfiguration() {
+        return super.getConfiguration() + "(k = " + k + ")";
+    }
+
+    @Override
+    public String toString() {
+        return k == 0 ? getClass().getSimpleName() : getClass().getSimpleName() + "(k = " + k + ")";
+    }
+
+}
@@ -11,6 +11,7 @@ import javax.vecmath.Vector3d;
 import cz.agents.alite.vis.Vis;
 import cz.agents.alite.vis.layer.VisLayer;
 import cz.agents.alite.vis.layer.terminal.TerminalLayer;
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
 
 
 public class PolicyLayer extends TerminalLayer {
@@ -19,7 +20,15 @@ public class PolicyLayer extends TerminalLayer {
        Action[][] getPolicy();
     }
 
+    /**
+     * Provider of a policy that is not materialized as an array, e.g. a {@link PackedPolicy}.
+     */
+    static public interface CompactPolicyProvider {
+       Policy getPolicy();
+    }
+
     PolicyProvider provider;
+    CompactPolicyProvider compactProvider;
 	private int cellSize;
 
     PolicyLayer(PolicyProvider provider, int cellSize) {
@@ -27,11 +36,21 @@ public class PolicyLayer extends TerminalLayer {
         this.cellSize = cellSize;
     }
 
+    PolicyLayer(CompactPolicyProvider provider, int cellSize) {
+        this.compactProvider = provider;
+        this.cellSize = cellSize;
+    }
+
     @Override
     public void paint(Graphics2D canvas) {
         canvas.setStroke(new BasicStroke(1));
         canvas.setColor(Color.BLUE);
 
+        if (compactProvider != null) {
+            paint(canvas, compactProvider.getPolicy());
+            return;
+        }
+
         Action[][] policy = provider.getPolicy();
         
         if (policy != null) {
@@ -50,6 +69,21 @@ public class PolicyLayer extends TerminalLayer {
         }
     }
     
+    private void paint(Graphics2D canvas, Policy policy) {
+        if (policy == null) {
+            return;
+        }
+        for (int x = 0; x < policy.getCols(); x++) {
+            for (int y = 0; y < policy.getRows(); y++) {
+                Action action = policy.action(x, y);
+                if (action != null) {
+                    Tuple2i dir = action.getDirection();
+                    drawArrow(canvas, x*cellSize, y*cellSize, x*cellSize + dir.x*cellSize/4, y*cellSize + dir.y*cellSize/4 );
+                }
+            }
+        }
+    }
+
     protected void drawArrow(Graphics2D canvas, int x1, int y1, int x2, int y2) {
     	
         x1 = Vis.transX(x1);
@@ -78,4 +112,8 @@ public class PolicyLayer extends TerminalLayer {
     public static VisLayer create(PolicyProvider provider, int cellSize) {
         return new PolicyLayer(provider,cellSize);
     }
+
+    public static VisLayer create(CompactPolicyProvider provider, int cellSize) {
+        return new PolicyLayer(provider,cellSize);
+    }
 }
@@ -0,0 +1,141 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.BitSet;
+
+/**
+ * Prioritized sweeping.
+ *
+ * Instead of sweeping all states, the state with the largest (bound on its) Bellman residual
+ * is backed up next. When the value of a state s' changes by d, the residual bound of each
+ * predecessor s grows by gamma * max_a T(s, a, s') * d, so only the predecessors of states
+ * whose values actually changed are queued. The solver stops when every bound drops below
+ * the same threshold the sweeping solvers use, the policy is then extracted greedily.
+ *
+ * The sweep count of the solution is the number of full-sweep equivalents (backups / states).
+ */
+public class PrioritizedSweepingSolver extends Solver {
+
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+
+        int states = model.states();
+        float[] U = new float[states];
+        float[] residuals = new float[states];
+        byte[] policy = new byte[states];
+
+        StateQueue queue = new StateQueue(states);
+
+        for (int s = 0; s < states; s++) {
+            residuals[s] = Math.abs(backup(model, U, s, policy) - U[s]);
+            if (residuals[s] >= THRESHOLD) {
+                queue.update(s, residuals[s]);
+            }
+        }
+
+        long backups = states + sweep(model, U, residuals, policy, queue, null);
+
+        for (int s = 0; s < states; s++) {
+            backup(model, U, s, policy);
+        }
+        backups += states;
+
+        return new Solution(model, U, policy, (int) ((backups + states - 1) / states), backups);
+    }
+
+    /**
+     * Re-solves the model from the solution of a previous version of the model (warm start).
+     *
+     * Only the given states are backed up initially, further backups propagate from them backwards,
+     * through the predecessors of the states whose values change. The seeds must contain every state
+     * whose transitions or rewards differ from the previous model.
+     *
+     * @param model the model after the change
+     * @param previous solution of the whole model before the change, it is not modified
+     * @param seeds the states affected by the change
+     * @return solution of the changed model
+     */
+    static Solution resolve(CompiledWorldModel model, Solution previous, int[] seeds) {
+        if (previous.getCols() != model.getCols() || previous.getRows() != model.getRows()) {
+            throw new IllegalArgumentException("dimensions of the map have changed");
+        }
+        if (previous.isPartial()) {
+            throw new IllegalArgumentException("the previous solution does not cover the whole map");
+        }
+
+        int states = model.states();
+        float[] U = previous.copyValues();
+        byte[] policy = previous.copyActions();
+        float[] residuals = new float[states];
+
+        StateQueue queue = new StateQueue(states);
+
+        for (int s : seeds) {
+            residuals[s] = Math.abs(backup(model, U, s, policy) - U[s]);
+            if (residuals[s] >= THRESHOLD) {
+                queue.update(s, residuals[s]);
+            }
+        }
+
+        BitSet changed = new BitSet(states);
+        long backups = seeds.length + sweep(model, U, residuals, policy, queue, changed);
+
+        // refresh the greedy actions of the states whose successors have changed their values
+        int[] predecessorOffsets = model.predecessorOffsets();
+        int[] predecessors = model.predecessors();
+        for (int s = changed.nextSetBit(0); s >= 0; s = changed.nextSetBit(s + 1)) {
+            for (int k = predecessorOffsets[s]; k < predecessorOffsets[s + 1]; k++) {
+                backup(model, U, predecessors[k], policy);
+                backups++;
+            }
+        }
+
+        return new Solution(model, U, policy, (int) ((backups + states - 1) / states), backups);
+    }
+
+    /**
+     * Processes the queue until all residual bounds are below the threshold.
+     *
+     * @param U value function, updated in place
+     * @param residuals upper bounds on the Bellman residuals of all states, updated in place
+     * @param policy greedy actions of the backed up states
+     * @param queue states with a residual bound above the threshold, keyed by the bound
+     * @param changed if not null, the states whose values have changed are marked in it
+     * @return number of backups performed
+     */
+    static long sweep(CompiledWorldModel model, float[] U, float[] residuals, byte[] policy, StateQueue queue, BitSet changed) {
+        int[] predecessorOffsets = model.predecessorOffsets();
+        int[] predecessors = model.predecessors();
+        float[] predecessorProbabilities = model.predecessorProbabilities();
+
+        long backups = 0;
+
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+
+            float value = backup(model, U, s, policy);
+            backups++;
+
+            float change = Math.abs(value - U[s]);
+            U[s] = value;
+            residuals[s] = 0;
+
+            if (change == 0) {
+                continue;
+            }
+            if (changed != null) {
+                changed.set(s);
+            }
+
+            for (int k = predecessorOffsets[s]; k < predecessorOffsets[s + 1]; k++) {
+                int p = predecessors[k];
+                residuals[p] += GAMMA * predecessorProbabilities[k] * change;
+                if (residuals[p] >= THRESHOLD) {
+                    queue.update(p, residuals[p]);
+                }
+            }
+        }
+
+        return backups;
+    }
+
+}
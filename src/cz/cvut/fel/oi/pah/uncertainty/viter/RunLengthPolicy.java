@@ -0,0 +1,107 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+
+/**
+ * Policy compressed by run-length encoding of each row.
+ *
+ * A run is a maximal sequence of consecutive cells of a row with the same action (or undefined).
+ * The runs of all rows are stored in two flat arrays, the start column and the action of each run,
+ * and the runs of row y occupy the range [rowOffsets[y], rowOffsets[y+1]) of them. Large open areas
+ * of the map usually share an action, so a row takes a few runs instead of a cell per column.
+ *
+ * A lookup is a binary search among the runs of the row, i.e. O(log runs).
+ */
+public class RunLengthPolicy implements Policy {
+
+    private static final Action[] ACTIONS = Action.values();
+
+    private final int cols;
+    private final int rows;
+    private final int[] rowOffsets;
+    private final int[] starts;
+    private final byte[] actions;
+
+    /**
+     * @param policy the policy to compress
+     */
+    public RunLengthPolicy(Policy policy) {
+        this.cols = policy.getCols();
+        this.rows = policy.getRows();
+        this.rowOffsets = new int[rows + 1];
+
+        int[] runStarts = new int[Math.max(16, rows)];
+        byte[] runActions = new byte[runStarts.length];
+        int runs = 0;
+
+        for (int y = 0; y < rows; y++) {
+            rowOffsets[y] = runs;
+            byte last = 0;
+            for (int x = 0; x < cols; x++) {
+                Action action = policy.action(x, y);
+                byte current = action != null ? (byte) action.ordinal() : -1;
+                if (x == 0 || current != last) {
+                    if (runs == runStarts.length) {
+                        runStarts = Arrays.copyOf(runStarts, 2 * runs);
+                        runActions = Arrays.copyOf(runActions, 2 * runs);
+                    }
+                    runStarts[runs] = x;
+                    runActions[runs] = current;
+                    runs++;
+                    last = current;
+                }
+            }
+        }
+        rowOffsets[rows] = runs;
+
+        this.starts = Arrays.copyOf(runStarts, runs);
+        this.actions = Arrays.copyOf(runActions, runs);
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public Action action(int x, int y) {
+        int run = Arrays.binarySearch(starts, rowOffsets[y], rowOffsets[y + 1], x);
+        if (run < 0) {
+            // the run containing x starts before the insertion point
+            run = -run - 2;
+        }
+        return actions[run] >= 0 ? ACTIONS[actions[run]] : null;
+    }
+
+    /**
+     * @return number of runs of all rows
+     */
+    public int getRuns() {
+        return starts.length;
+    }
+
+    /**
+     * @return approximate size of the encoded arrays in bytes
+     */
+    public long getBytes() {
+        return 4L * rowOffsets.length + 4L * starts.length + actions.length;
+    }
+
+    /**
+     * @return the smaller of the run-length and the packed encoding of the policy
+     */
+    public static Policy compress(Policy policy) {
+        RunLengthPolicy encoded = new RunLengthPolicy(policy);
+        // two bits per cell, the partial policies may take another bit
+        long packed = ((long) policy.getCols() * policy.getRows() + 3) / 4;
+        return encoded.getBytes() <= packed ? encoded : new PackedPolicy(policy);
+    }
+
+}
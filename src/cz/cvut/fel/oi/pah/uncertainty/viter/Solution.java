@@ -0,0 +1,109 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+
+/**
+ * Result of a {@link Solver}: the value function and the policy indexed by state
+ * of the compiled model, together with the number of sweeps and Bellman backups spent.
+ * A partial policy has a negative action in the states it does not cover.
+ */
+public class Solution implements Policy {
+
+    final int cols;
+    final int rows;
+    final float[] values;
+    final byte[] actions;
+
+    final int sweeps;
+    final long backups;
+
+    Solution(CompiledWorldModel model, float[] values, byte[] actions, int sweeps, long backups) {
+        this(model.getCols(), model.getRows(), values, actions, sweeps, backups);
+    }
+
+    Solution(int cols, int rows, float[] values, byte[] actions, int sweeps, long backups) {
+        this.cols = cols;
+        this.rows = rows;
+        this.values = values;
+        this.actions = actions;
+        this.sweeps = sweeps;
+        this.backups = backups;
+    }
+
+    public float value(int x, int y) {
+        return values[y * cols + x];
+    }
+
+    @Override
+    public Action action(int x, int y) {
+        byte action = actions[y * cols + x];
+        return action >= 0 ? Action.values()[action] : null;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    public int getSweeps() {
+        return sweeps;
+    }
+
+    public long getBackups() {
+        return backups;
+    }
+
+    /**
+     * @return an array that contains for each cell of the environment one action
+     */
+    public Action[][] getPolicy() {
+        Action[][] policy = new Action[cols][rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                policy[x][y] = action(x, y);
+            }
+        }
+        return policy;
+    }
+
+    /**
+     * @return the value function as an array indexed by [x][y]
+     */
+    public float[][] getValueFunction() {
+        float[][] U = new float[cols][rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                U[x][y] = value(x, y);
+            }
+        }
+        return U;
+    }
+
+    /**
+     * @return true if the solution covers only some states (e.g. the ones reachable from the start),
+     * so it cannot be used as a warm start of the whole map
+     */
+    boolean isPartial() {
+        return false;
+    }
+
+    /**
+     * @return copy of the value function indexed by state
+     */
+    float[] copyValues() {
+        return values.clone();
+    }
+
+    /**
+     * @return copy of the policy (action ordinals) indexed by state
+     */
+    byte[] copyActions() {
+        return actions.clone();
+    }
+
+}
@@ -0,0 +1,145 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Binary file format of a solved map, so that the policies of fixed maps can be computed offline.
+ *
+ * All numbers are little-endian. The file starts with a header of {@link #HEADER_SIZE} bytes:
+ *
+ * int magic, int version, long fingerprint of the map (see {@link WorldModel#fingerprint(GridMap)}),
+ * int cols, int rows, int sweeps, long backups, double gamma, double epsilon,
+ * long fingerprint of the slip model compiled for the map (see {@link WorldModel#getSlipModel()})
+ *
+ * followed by the value function (cols * rows floats) and the policy (cols * rows action ordinals
+ * as bytes, negative where a partial policy is undefined), both in row-major order.
+ *
+ * A snapshot is read by mapping the file, nothing is deserialized: the pages of the value function
+ * and of the policy are loaded by the operating system as the cells are queried.
+ */
+public class SolutionSnapshot {
+
+    static final int MAGIC = 0x50414856; // "VHAP" when read as little-endian bytes
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 64;
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * Writes the solution of the map under the current slip model into the file.
+     * @param file the snapshot file, replaced if it exists
+     * @param map the map the solution belongs to
+     * @param solution the solution of the map
+     */
+    public static void write(Path file, GridMap map, Solution solution) throws IOException {
+        int cols = solution.getCols();
+        int rows = solution.getRows();
+        if (map.getCols() != cols || map.getRows() != rows) {
+            throw new IllegalArgumentException("solution does not match the map");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(WorldModel.fingerprint(map));
+            header.putInt(cols).putInt(rows).putInt(solution.getSweeps()).putLong(solution.getBackups());
+            header.putDouble(Solver.GAMMA).putDouble(Solver.EPSILON);
+            header.putLong(slipFingerprint(map));
+            header.rewind();
+            writeFully(channel, header);
+
+            // streamed row by row, the solution may be mapped as well
+            ByteBuffer row = ByteBuffer.allocate(4 * cols).order(ORDER);
+            for (int y = 0; y < rows; y++) {
+                row.clear();
+                for (int x = 0; x < cols; x++) {
+                    row.putFloat(solution.value(x, y));
+                }
+                row.flip();
+                writeFully(channel, row);
+            }
+            for (int y = 0; y < rows; y++) {
+                row.clear();
+                for (int x = 0; x < cols; x++) {
+                    Action action = solution.action(x, y);
+                    row.put(action != null ? (byte) action.ordinal() : -1);
+                }
+                row.flip();
+                writeFully(channel, row);
+            }
+        }
+    }
+
+    /**
+     * Maps the snapshot of the map.
+     * @param file the snapshot file
+     * @param map the map of the environment
+     * @return solution backed by the file, null if the snapshot belongs to another map
+     * or was solved with other parameters or another slip model than the current one
+     * @throws IOException if the file cannot be read or is not a snapshot of a supported version
+     */
+    public static Solution read(Path file, GridMap map) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("truncated snapshot header: " + file);
+                }
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a solution snapshot: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported snapshot version " + version + ": " + file);
+            }
+
+            long fingerprint = header.getLong();
+            int cols = header.getInt();
+            int rows = header.getInt();
+            int sweeps = header.getInt();
+            long backups = header.getLong();
+            double gamma = header.getDouble();
+            double epsilon = header.getDouble();
+            long slip = header.getLong();
+
+            if (cols != map.getCols() || rows != map.getRows() || gamma != Solver.GAMMA || epsilon != Solver.EPSILON
+                    || fingerprint != WorldModel.fingerprint(map) || slip != slipFingerprint(map)) {
+                return null;
+            }
+
+            long cells = (long) cols * rows;
+            if (channel.size() < HEADER_SIZE + 5 * cells) {
+                throw new IOException("truncated snapshot: " + file);
+            }
+
+            // the mappings stay valid after the channel is closed
+            MappedGrid values = MappedGrid.readOnly(channel, HEADER_SIZE, cols, rows, 4, ORDER);
+            MappedGrid actions = MappedGrid.readOnly(channel, HEADER_SIZE + 4 * cells, cols, rows, 1, ORDER);
+            return new MappedSolution(values, actions, sweeps, backups);
+        }
+    }
+
+    private static long slipFingerprint(GridMap map) {
+        return WorldModel.getSlipModel().compile(map).fingerprint();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Common base of the MDP solvers used by {@link ValueIterationAgent}.
+ *
+ * Q(s, a) =def= sum_{s' in S} T(s, a, s') [R(s, a, s') + gamma * V(s')]
+ */
+public abstract class Solver {
+
+    static final double GAMMA = 0.9;
+    static final double EPSILON = 0.001;
+
+    static final int MAX_ITERS = 10000;
+
+    /**
+     * Bound on the Bellman residual that guarantees |V - V*| < EPSILON.
+     */
+    static final double THRESHOLD = EPSILON * (1.0 - GAMMA) / GAMMA;
+
+    /**
+     * Compute an optimal policy (and its value function) of the given model.
+     * @param model compiled transition model of the environment
+     * @return solution holding the value function, the policy and solver statistics
+     */
+    public abstract Solution solve(CompiledWorldModel model);
+
+    /**
+     * Compute a policy that is defined at least in the start state and in all states reachable from it
+     * under the policy. Solvers of the whole state space ignore the start state.
+     * @param model compiled transition model of the environment
+     * @param start the state the agent is in
+     * @return solution holding the value function, the policy and solver statistics
+     */
+    public Solution solve(CompiledWorldModel model, int start) {
+        return solve(model);
+    }
+
+    /**
+     * Compiles the map and solves its model, see {@link #solve(CompiledWorldModel, int)}.
+     * Solvers that do not need the compiled transitions override this method to work on the map directly.
+     * @param map the map of the environment
+     * @param start index of the cell the agent is in
+     * @return solution holding the value function, the policy and solver statistics
+     */
+    public Solution solve(GridMap map, int start) {
+        return solve(WorldModel.compile(map), start);
+    }
+
+    /**
+     * Bellman backup of the state s with respect to the value function U.
+     * @param policy array the greedy action of s is stored into
+     * @return max_a Q(s, a)
+     */
+    static float backup(CompiledWorldModel model, float[] U, int s, byte[] policy) {
+        return backup(model.offsets, s * CompiledWorldModel.ACTIONS, model.successors, model.probabilities,
+                model.rewards, GAMMA, U, s, policy);
+    }
+
+    /**
+     * Bellman backup of the state s over transitions in the layout of {@link CompiledWorldModel}:
+     * the transitions of the action a occupy the range [offsets[base + a], offsets[base + a + 1])
+     * of the successor, probability and reward arrays.
+     * @param gamma the discount factor
+     * @param policy array the greedy action of s is stored into
+     * @return max_a Q(s, a)
+     */
+    static float backup(int[] offsets, int base, int[] successors, float[] probabilities, float[] rewards,
+            double gamma, float[] U, int s, byte[] policy) {
+        float maxQ = Float.NEGATIVE_INFINITY;
+        int maxAction = 0;
+
+        for (int a = 0; a < CompiledWorldModel.ACTIONS; a++) {
+            float Q = q(offsets, base + a, successors, probabilities, rewards, gamma, U);
+            if (Q > maxQ) {
+                maxQ = Q;
+                maxAction = a;
+            }
+        }
+
+        policy[s] = (byte) maxAction;
+        return maxQ;
+    }
+
+    /**
+     * @return Q(s, a) with respect to the value function U
+     */
+    static float q(CompiledWorldModel model, float[] U, int s, int a) {
+        return q(model.offsets, s * CompiledWorldModel.ACTIONS + a, model.successors, model.probabilities,
+                model.rewards, GAMMA, U);
+    }
+
+    /**
+     * @return Q-value of the transitions [offsets[pair], offsets[pair + 1]) with respect to the value function U
+     */
+    private static float q(int[] offsets, int pair, int[] successors, float[] probabilities, float[] rewards,
+            double gamma, float[] U) {
+        float Q = 0f;
+        int end = offsets[pair + 1];
+        for (int k = offsets[pair]; k < end; k++) {
+            Q += probabilities[k] * (rewards[k] + gamma * U[successors[k]]);
+        }
+        return Q;
+    }
+
+    /**
+     * @return value of a deterministic path to GOLD with the given number of moves: -1 for each move
+     * but the last one, which receives the gold, or the value of moving forever if there is no path
+     */
+    static float pathValue(int distance) {
+        if (distance == DistanceField.UNREACHABLE) {
+            return (float) (-1 / (1 - GAMMA));
+        }
+        if (distance == 0) {
+            return 0;
+        }
+        double discount = Math.pow(GAMMA, distance - 1);
+        return (float) (-(1 - discount) / (1 - GAMMA) + WorldModel.reward(CellContent.GOLD) * discount);
+    }
+
+    /**
+     * Heuristic initial value function: the value of the shortest path to GOLD over the moves
+     * of the slip model of the model (see {@link DistanceField}) in the EMPTY states, the exact value 0
+     * in the absorbing ones. No outcome of the actions reaches GOLD in fewer moves, so it is an upper bound
+     * on V*, also with slip models that drift to diagonal neighbours.
+     */
+    static float[] initialValues(CompiledWorldModel model) {
+        DistanceField field = DistanceField.toGold(model.getMap(), model.getSlipModel());
+        float[] U = new float[model.states()];
+        for (int s = 0; s < U.length; s++) {
+            if (model.content(s) == CellContent.EMPTY) {
+                U[s] = pathValue(field.distance(s));
+            }
+        }
+        return U;
+    }
+
+    /**
+     * @return identifier of the solver and of its parameters that change the policy it computes,
+     * solvers with the same configuration compute the same policy of a map (see {@link PolicyCache})
+     */
+    public String getConfiguration() {
+        return getClass().getName();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+}
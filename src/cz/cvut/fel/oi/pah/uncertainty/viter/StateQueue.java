@@ -0,0 +1,109 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary max-heap of states keyed by a float priority.
+ * Each state is contained at most once, its priority can be changed in O(log n).
+ */
+class StateQueue {
+
+    private final int[] heap;
+    private final float[] priority;
+    private final int[] position;   // position of a state in the heap, -1 if not contained
+    private int size;
+
+    StateQueue(int states) {
+        heap = new int[states];
+        priority = new float[states];
+        position = new int[states];
+        Arrays.fill(position, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int s) {
+        return position[s] >= 0;
+    }
+
+    /**
+     * @return the highest priority in the queue (the queue must not be empty)
+     */
+    float peekPriority() {
+        return priority[heap[0]];
+    }
+
+    /**
+     * Inserts the state or changes its priority if it is already contained.
+     */
+    void update(int s, float p) {
+        if (position[s] < 0) {
+            position[s] = size;
+            heap[size++] = s;
+            priority[s] = p;
+            up(position[s]);
+        } else {
+            float old = priority[s];
+            priority[s] = p;
+            if (p > old) {
+                up(position[s]);
+            } else {
+                down(position[s]);
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the state with the highest priority.
+     */
+    int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            down(0);
+        }
+        return top;
+    }
+
+    private void up(int i) {
+        int s = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priority[heap[parent]] >= priority[s]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = s;
+        position[s] = i;
+    }
+
+    private void down(int i) {
+        int s = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priority[heap[child + 1]] > priority[heap[child]]) {
+                child++;
+            }
+            if (priority[heap[child]] <= priority[s]) {
+                break;
+            }
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = s;
+        position[s] = i;
+    }
+
+}
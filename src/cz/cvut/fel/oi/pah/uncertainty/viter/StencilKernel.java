@@ -0,0 +1,128 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Bellman backup of a row of the padded grid of {@link StencilValueIterationSolver}.
+ *
+ * This is the scalar kernel. {@link #create()} returns the kernel built on the incubating
+ * Vector API (jdk.incubator.vector) instead when it is available: the class is compiled
+ * from the separate source set src-vector with JDK 16 or newer and loaded at runtime, since
+ * the rest of the sources target Java 7. Without the class or without the module
+ * (the JVM needs --add-modules jdk.incubator.vector) the scalar kernel is used.
+ * Both kernels compute the same values.
+ */
+class StencilKernel {
+
+    static final String VECTOR_KERNEL = "cz.cvut.fel.oi.pah.uncertainty.viter.VectorStencilKernel";
+
+    static final byte OBSTACLE = (byte) CellContent.OBSTACLE.ordinal();
+    static final byte EMPTY = (byte) CellContent.EMPTY.ordinal();
+
+    private static final StencilKernel INSTANCE = load();
+
+    /**
+     * @return the vector kernel if the JVM supports it, the scalar one otherwise
+     */
+    static StencilKernel create() {
+        return INSTANCE;
+    }
+
+    private static StencilKernel load() {
+        try {
+            return (StencilKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // no vector source set or no jdk.incubator.vector module
+            return new StencilKernel();
+        }
+    }
+
+    /**
+     * Bellman backup of all cells of the padded row y.
+     * @param above W of the row y - 1 (see {@link StencilValueIterationSolver})
+     * @param row W of the row y
+     * @param below W of the row y + 1
+     * @return max residual of the row
+     */
+    double backupRow(byte[] cells, float[] U, float[] newU, byte[] policy,
+            int y, int width, double[] above, double[] row, double[] below) {
+        return backupCells(cells, U, newU, policy, y, width, above, row, below, 1, width - 2);
+    }
+
+    /**
+     * Bellman backup of the cells [from, to] of the padded row y.
+     * @return max residual of the cells
+     */
+    static double backupCells(byte[] cells, float[] U, float[] newU, byte[] policy,
+            int y, int width, double[] above, double[] row, double[] below, int from, int to) {
+
+        int cols = width - 2;
+        int base = y * width;
+        double delta = 0.0;
+
+        for (int x = from; x <= to; x++) {
+            int c = base + x;
+            double self = row[x];
+
+            double wN = cells[c - width] != OBSTACLE ? above[x] : self;
+            double wS = cells[c + width] != OBSTACLE ? below[x] : self;
+            double wE = cells[c + 1] != OBSTACLE ? row[x + 1] : self;
+            double wW = cells[c - 1] != OBSTACLE ? row[x - 1] : self;
+
+            int p = (y - 1) * cols + x - 1;
+            float maxQ;
+            if (cells[c] != EMPTY) {
+                // absorbing cell: a self-loop with zero reward for every action
+                maxQ = (float) (1f * (0 + Solver.GAMMA * U[c]));
+                policy[p] = 0;
+            } else {
+                maxQ = backup(wN, wS, wE, wW, policy, p);
+            }
+
+            newU[c] = maxQ;
+
+            double diff = Math.abs(maxQ - U[c]);
+            delta = diff > delta ? diff : delta;
+        }
+
+        return delta;
+    }
+
+    /**
+     * Bellman backup of an EMPTY cell of the standard slip model from W = R + gamma * V
+     * of its four neighbours, or of the cell itself where a neighbour blocks the move,
+     * followed by a branch-free max/argmax. The cells of {@link GridLayout} are backed up by it too.
+     * @param policy array the greedy action is stored into at the position p
+     * @return max_a Q(c, a)
+     */
+    static float backup(double wN, double wS, double wE, double wW, byte[] policy, int p) {
+        float pIntended = SlipModel.STANDARD.getIntended();
+        float pLeft = SlipModel.STANDARD.getLeft();
+        float pRight = SlipModel.STANDARD.getRight();
+
+        // same outcome order as SlipModel.PERPENDICULAR
+        float qN = (float) ((float) ((float) (pIntended * wN) + pLeft * wE) + pRight * wW);
+        float qS = (float) ((float) ((float) (pIntended * wS) + pLeft * wE) + pRight * wW);
+        float qE = (float) ((float) ((float) (pIntended * wE) + pLeft * wN) + pRight * wS);
+        float qW = (float) ((float) ((float) (pIntended * wW) + pLeft * wN) + pRight * wS);
+
+        float maxQ = qN;
+        int maxAction = 0;
+        maxAction = qS > maxQ ? 1 : maxAction;
+        maxQ = Math.max(maxQ, qS);
+        maxAction = qE > maxQ ? 2 : maxAction;
+        maxQ = Math.max(maxQ, qE);
+        maxAction = qW > maxQ ? 3 : maxAction;
+        maxQ = Math.max(maxQ, qW);
+
+        policy[p] = (byte) maxAction;
+        return maxQ;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+}
@@ -0,0 +1,289 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Synchronous value iteration with a stencil Bellman kernel.
+ *
+ * The transitions of the grid world form a fixed local stencil: the intended direction and
+ * the two perpendicular ones, where a move into an obstacle or out of the map stays in place.
+ * Instead of following the transition lists of the compiled model, the kernel works on a padded
+ * row-major grid (a border of obstacles removes all bounds checks) and processes whole rows:
+ *
+ * W(c) = R(c) + gamma * V(c) is computed for three consecutive rows, then the four Q-values
+ * of each cell of the middle row are combined from the W of its neighbours (or of the cell itself
+ * if the neighbour is blocked), followed by a branch-free max/argmax.
+ *
+ * The floating point operations are the same, and in the same order, as the ones of
+ * {@link ValueIterationSolver}, so the solution is identical. The backup of a row is done by
+ * a {@link StencilKernel}, which processes several cells at once with the Vector API where available.
+ *
+ * Since the kernel only needs three consecutive rows at a time, the solver can also keep
+ * the value function and the policy out of the heap: given a directory, both are stored
+ * in memory-mapped files (see {@link MappedGrid}) and streamed row by row during each sweep,
+ * so the heap holds only the map (2 bits per cell) and a few rows.
+ *
+ * The stencil is the one of {@link SlipModel#STANDARD}, models compiled with another slip model
+ * are solved by {@link ValueIterationSolver}.
+ */
+public class StencilValueIterationSolver extends Solver {
+
+    private static final byte OBSTACLE = StencilKernel.OBSTACLE;
+
+    private final Path directory;
+    private final StencilKernel kernel = StencilKernel.create();
+
+    /**
+     * Solver that keeps the value function and the policy on the heap.
+     */
+    public StencilValueIterationSolver() {
+        this(null);
+    }
+
+    /**
+     * @param directory directory of the memory-mapped value function and policy files,
+     * null to keep them on the heap
+     */
+    public StencilValueIterationSolver(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+        if (model.getSlipModel() != SlipModel.STANDARD) {
+            return new ValueIterationSolver().solve(model);
+        }
+        return solve(model.getMap());
+    }
+
+    /**
+     * Solves the map directly, the transitions are never compiled.
+     */
+    @Override
+    public Solution solve(GridMap map, int start) {
+        if (WorldModel.getSlipModel() != SlipModel.STANDARD) {
+            return new ValueIterationSolver().solve(WorldModel.compile(map));
+        }
+        return solve(map);
+    }
+
+    private Solution solve(GridMap map) {
+        if (directory == null) {
+            return solveOnHeap(map);
+        }
+        try {
+            return solveMapped(map);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot map the value function into " + directory, e);
+        }
+    }
+
+    private Solution solveOnHeap(GridMap map) {
+
+        int cols = map.getCols();
+        int rows = map.getRows();
+        int width = cols + 2;
+
+        byte[] cells = pad(map);
+        float[] rewards = rewards();
+
+        float[] U = new float[width * (rows + 2)];
+        float[] newU = new float[width * (rows + 2)];
+        byte[] policy = new byte[cols * rows];
+
+        double[] above = new double[width];
+        double[] row = new double[width];
+        double[] below = new double[width];
+
+        int i = 0;
+        double delta;
+
+        do {
+
+            i++;
+            delta = 0.0;
+
+            float[] tmp = U;
+            U = newU;
+            newU = tmp;
+
+            weights(cells, rewards, U, 0, width, above);
+            weights(cells, rewards, U, 1, width, row);
+
+            for (int y = 1; y <= rows; y++) {
+                weights(cells, rewards, U, y + 1, width, below);
+
+                delta = Math.max(delta, kernel.backupRow(cells, U, newU, policy, y, width, above, row, below));
+
+                double[] rotated = above;
+                above = row;
+                row = below;
+                below = rotated;
+            }
+
+        } while (delta >= THRESHOLD && i < MAX_ITERS);
+
+        float[] values = new float[cols * rows];
+        for (int y = 0; y < rows; y++) {
+            System.arraycopy(newU, (y + 1) * width + 1, values, y * cols, cols);
+        }
+
+        return new Solution(cols, rows, values, policy, i, (long) i * cols * rows);
+    }
+
+    /**
+     * The same sweeps as {@link #solveOnHeap(GridMap)} over a window of three padded rows:
+     * the rows of the value function are read from one mapped file and written to another,
+     * the files are swapped after each sweep.
+     */
+    private Solution solveMapped(GridMap map) throws IOException {
+
+        int cols = map.getCols();
+        int rows = map.getRows();
+        int width = cols + 2;
+
+        float[] rewards = rewards();
+
+        // padded rows y-1, y and y+1 of the map and of the value function
+        byte[] cells = new byte[3 * width];
+        float[] U = new float[3 * width];
+        float[] newU = new float[3 * width];
+        byte[] policy = new byte[cols];
+
+        double[] above = new double[width];
+        double[] row = new double[width];
+        double[] below = new double[width];
+
+        MappedGrid values = null;
+        MappedGrid next = null;
+        MappedGrid actions = null;
+        boolean solved = false;
+        try {
+            values = MappedGrid.createTemp(directory, "values", cols, rows, 4);
+            next = MappedGrid.createTemp(directory, "values", cols, rows, 4);
+            actions = MappedGrid.createTemp(directory, "policy", cols, rows, 1);
+
+            int i = 0;
+            double delta;
+
+            do {
+
+                i++;
+                delta = 0.0;
+
+                // the files are not initialized, the first sweep starts from zero
+                boolean zero = i == 1;
+                load(map, values, -1, zero, cells, U, 0);
+                load(map, values, 0, zero, cells, U, 1);
+                weights(cells, rewards, U, 0, width, above);
+                weights(cells, rewards, U, 1, width, row);
+
+                for (int y = 1; y <= rows; y++) {
+                    load(map, values, y, zero, cells, U, 2);
+                    weights(cells, rewards, U, 2, width, below);
+
+                    delta = Math.max(delta, kernel.backupRow(cells, U, newU, policy, 1, width, above, row, below));
+                    next.writeRow(y - 1, newU, width + 1);
+                    actions.writeRow(y - 1, policy, 0);
+
+                    System.arraycopy(cells, width, cells, 0, 2 * width);
+                    System.arraycopy(U, width, U, 0, 2 * width);
+
+                    double[] rotated = above;
+                    above = row;
+                    row = below;
+                    below = rotated;
+                }
+
+                MappedGrid tmp = values;
+                values = next;
+                next = tmp;
+
+            } while (delta >= THRESHOLD && i < MAX_ITERS);
+
+            solved = true;
+            return new MappedSolution(values, actions, i, (long) i * cols * rows);
+        } finally {
+            close(next);
+            if (!solved) {
+                close(values);
+                close(actions);
+            }
+        }
+    }
+
+    private static void close(MappedGrid grid) throws IOException {
+        if (grid != null) {
+            grid.close();
+        }
+    }
+
+    /**
+     * Loads the row y of the map and of the value function into the given row of the window,
+     * padded by a border of obstacles. Rows outside of the map are obstacles.
+     */
+    private static void load(GridMap map, MappedGrid values, int y, boolean zero, byte[] cells, float[] U, int slot) {
+        int cols = map.getCols();
+        int width = cols + 2;
+        int base = slot * width;
+
+        Arrays.fill(cells, base, base + width, OBSTACLE);
+        Arrays.fill(U, base, base + width, 0f);
+        if (y < 0 || y >= map.getRows()) {
+            return;
+        }
+
+        for (int x = 0; x < cols; x++) {
+            cells[base + x + 1] = (byte) map.ordinal(map.index(x, y));
+        }
+        if (!zero) {
+            values.readRow(y, U, base + 1);
+        }
+    }
+
+    /**
+     * @return reward of entering a cell indexed by its content
+     */
+    static float[] rewards() {
+        float[] rewards = new float[CellContent.values().length];
+        for (CellContent content : CellContent.values()) {
+            rewards[content.ordinal()] = WorldModel.reward(content);
+        }
+        return rewards;
+    }
+
+    /**
+     * @return cell contents of the map on a grid padded by a border of obstacles
+     */
+    static byte[] pad(GridMap map) {
+        int cols = map.getCols();
+        int rows = map.getRows();
+        int width = cols + 2;
+
+        byte[] cells = new byte[width * (rows + 2)];
+        Arrays.fill(cells, OBSTACLE);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                cells[(y + 1) * width + x + 1] = (byte) map.ordinal(map.index(x, y));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * W(c) = R(c) + gamma * V(c) for all cells c of the padded row y.
+     */
+    static void weights(byte[] cells, float[] rewards, float[] U, int y, int width, double[] W) {
+        int base = y * width;
+        for (int x = 0; x < width; x++) {
+            W[x] = rewards[cells[base + x]] + GAMMA * U[base + x];
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import java.util.Arrays;
+
+/**
+ * Topological value iteration.
+ *
+ * The state graph (s -> s' whenever T(s, a, s') > 0 for some a) is decomposed into strongly
+ * connected components. The value of a state depends only on the values of its component and
+ * of the components reachable from it, so the components are solved one by one to convergence
+ * in reverse topological order (successors first) and never swept again afterwards.
+ * Each component is swept in place (Gauss-Seidel).
+ */
+public class TopologicalValueIterationSolver extends Solver {
+
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+
+        int states = model.states();
+        float[] U = new float[states];
+        byte[] policy = new byte[states];
+
+        int[] components = new int[states + 1];
+        int[] members = new int[states];
+        int count = decompose(model, components, members);
+
+        long backups = 0;
+        int maxSweeps = 0;
+
+        for (int c = 0; c < count; c++) {
+
+            if (components[c + 1] - components[c] == 1 && !hasSelfLoop(model, members[components[c]])) {
+                // the successors are solved already, a single backup is exact
+                int s = members[components[c]];
+                U[s] = backup(model, U, s, policy);
+                backups++;
+                maxSweeps = Math.max(maxSweeps, 1);
+                continue;
+            }
+
+            int i = 0;
+            double delta;
+
+            do {
+                i++;
+                delta = 0.0;
+
+                for (int m = components[c]; m < components[c + 1]; m++) {
+                    int s = members[m];
+                    float value = backup(model, U, s, policy);
+
+                    double diff = Math.abs(value - U[s]);
+                    if (diff > delta) {
+                        delta = diff;
+                    }
+
+                    U[s] = value;
+                }
+            } while (delta >= THRESHOLD && i < MAX_ITERS);
+
+            backups += (long) i * (components[c + 1] - components[c]);
+            maxSweeps = Math.max(maxSweeps, i);
+        }
+
+        return new Solution(model, U, policy, maxSweeps, backups);
+    }
+
+    private static boolean hasSelfLoop(CompiledWorldModel model, int s) {
+        for (int k = model.offsets[s * CompiledWorldModel.ACTIONS]; k < model.offsets[(s + 1) * CompiledWorldModel.ACTIONS]; k++) {
+            if (model.successors[k] == s) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Iterative Tarjan's algorithm. Components are emitted in reverse topological order,
+     * i.e. a component is emitted only after all components reachable from it.
+     *
+     * @param components filled with the start offsets of the components in members
+     * @param members filled with the states grouped by component
+     * @return number of components
+     */
+    static int decompose(CompiledWorldModel model, int[] components, int[] members) {
+        int states = model.states();
+        int[] offsets = model.offsets;
+        int[] successors = model.successors;
+
+        int[] index = new int[states];
+        int[] lowlink = new int[states];
+        boolean[] onStack = new boolean[states];
+        int[] stack = new int[states];
+        int[] callStack = new int[states];
+        int[] next = new int[states];  // next transition to explore from the state
+
+        Arrays.fill(index, -1);
+
+        int counter = 0;
+        int top = 0;
+        int count = 0;
+        int emitted = 0;
+
+        for (int root = 0; root < states; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowlink[root] = counter++;
+            next[root] = offsets[root * CompiledWorldModel.ACTIONS];
+            stack[top++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int s = callStack[depth - 1];
+                int end = offsets[(s + 1) * CompiledWorldModel.ACTIONS];
+
+                if (next[s] < end) {
+                    int succ = successors[next[s]++];
+                    if (index[succ] < 0) {
+                        index[succ] = lowlink[succ] = counter++;
+                        next[succ] = offsets[succ * CompiledWorldModel.ACTIONS];
+                        stack[top++] = succ;
+                        onStack[succ] = true;
+                        callStack[depth++] = succ;
+                    } else if (onStack[succ]) {
+                        lowlink[s] = Math.min(lowlink[s], index[succ]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowlink[parent] = Math.min(lowlink[parent], lowlink[s]);
+                }
+
+                if (lowlink[s] == index[s]) {
+                    components[count++] = emitted;
+                    int member;
+                    do {
+                        member = stack[--top];
+                        onStack[member] = false;
+                        members[emitted++] = member;
+                    } while (member != s);
+                }
+            }
+        }
+
+        components[count] = emitted;
+        return count;
+    }
+
+}
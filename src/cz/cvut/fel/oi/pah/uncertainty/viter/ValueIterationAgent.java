@@ -1,7 +1,19 @@
 package cz.cvut.fel.oi.pah.uncertainty.viter;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import javax.vecmath.Point2i;
 
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
 /**
  *
  * general value iteration (rewards depend not only on current s, but on the whole transition):
@@ -14,12 +26,75 @@ import javax.vecmath.Point2i;
  */
 public class ValueIterationAgent {
 
-    private static final double GAMMA = 0.9;
-    private static final double EPSILON = 0.001;
+	private final Solver solver;
+	private final PolicyCache cache;
 
-    private static final int MAX_ITERS = 10000;
-	
-	private Action[][] policy;
+	// the policy the steps are answered from
+	private Policy policy;
+	// value function of the policy, kept to warm-start update, null if the policy was taken from the cache
+	private Solution solution;
+	// slip model the solution was solved with
+	private SlipModel slipModel;
+
+	// snapshot of a solution computed offline, loaded on the first step
+	private Path snapshot;
+
+	// deadline of a step in the anytime mode in nanoseconds, negative if the policy is always solved
+	private final long deadline;
+	private AnytimeValueIteration anytime;
+	private double bound;
+
+	// legacy map the last GridMap was adapted from
+	private CellContent[][] adaptedMap;
+	private GridMap adapted;
+
+	public ValueIterationAgent() {
+		this(new ValueIterationSolver());
+	}
+
+	/**
+	 * @param solver the solver used to compute the policy
+	 */
+	public ValueIterationAgent(Solver solver) {
+		this(solver, PolicyCache.getShared());
+	}
+
+	/**
+	 * @param solver the solver used to compute the policy
+	 * @param cache cache of policies of already solved maps, null to always solve the map
+	 */
+	public ValueIterationAgent(Solver solver, PolicyCache cache) {
+		this(solver, cache, -1);
+	}
+
+	/**
+	 * Agent in the anytime mode: the map is solved in the background (see {@link AnytimeValueIteration})
+	 * and each step is answered from the policy published last. A step waits for the first policy
+	 * at most the given deadline, then it falls back to {@link AnytimeValueIteration#greedy}.
+	 * The bound of the policy used by the last step is given by {@link #getBound()}.
+	 * @param deadline maximal time a step waits for the first policy
+	 * @param unit unit of the deadline
+	 */
+	public ValueIterationAgent(long deadline, TimeUnit unit) {
+		this(new ValueIterationSolver(), null, unit.toNanos(deadline));
+	}
+
+	private ValueIterationAgent(Solver solver, PolicyCache cache, long deadline) {
+		this.solver = solver;
+		this.cache = cache;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Agent that loads its policy from a snapshot computed offline (see {@link SolutionSnapshot})
+	 * instead of solving the map. The snapshot is mapped on the first step, if it belongs
+	 * to another map, the map is solved by {@link ValueIterationSolver}.
+	 * @param snapshot the snapshot file
+	 */
+	public ValueIterationAgent(Path snapshot) {
+		this(new ValueIterationSolver(), PolicyCache.getShared(), -1);
+		this.snapshot = snapshot;
+	}
 
 	/**
 	 * This method is called when the simulation engine requests the next action.
@@ -36,85 +111,234 @@ public class ValueIterationAgent {
 	 * Further, there are several pits on the map. You can query whether a position contains pit by
 	 * querying map[x][y] == CellContent.PIT.
 	 *
+	 * The array may be modified in place between the steps, the changed cells are found by comparing
+	 * it with its copy from the previous step and the policy is updated (see {@link #update(GridMap, Collection)}).
+	 *
 	 * @param x the x-coordinate of the current position of robot
 	 * @param y the y-coordinate of the current position of robot
 	 * @param map the map of the environment
 	 * @return action to perform in the next step
 	 */
 	public Action nextStep(int x, int y, CellContent[][] map) {
+		List<Point2i> changedCells = new ArrayList<>();
+		GridMap adapted = adapt(map, changedCells);
+		if (!changedCells.isEmpty() && deadline < 0) {
+			// the anytime mode notices the change by the modifications of the adapted map
+			update(adapted, changedCells);
+		}
+		return nextStep(x, y, adapted);
+	}
+
+	/**
+	 * @see #nextStep(int, int, CellContent[][])
+	 */
+	public Action nextStep(int x, int y, GridMap map) {
+
+		if (deadline >= 0) {
+			return anytimeStep(x, y, map);
+		}
 
 		if (policy == null) {
 			DebugVis.initVis();
 			// when called for the first time, compute the policy
-			policy = computePolicy(map);
+			computePolicy(map, x, y);
+		} else if (policy.action(x, y) == null) {
+			// partial policy that does not cover the current position
+			computePolicy(map, x, y);
 		}
 
-		return policy[x][y];
+		return policy.action(x, y);
 	}
 
-	/**
-	 * Compute an optimal policy for the agent.
-	 * @param map map of the environment
-	 * @return an array that contains for each cell of the environment one action,
-	 * i.e. one of: Action.NORTH, Action.SOUTH, Action.EAST, Action.WEST.
-	 */
-	private Action[][] computePolicy(CellContent[][] map) {
-
-        int cols = map.length; // x-limit
-        int rows = map[0].length; // y-limit
+	private Action anytimeStep(int x, int y, GridMap map) {
+		if (anytime == null) {
+			DebugVis.initVis();
+		}
+		start(map);
 
-        float[][] U;
-		float[][] newU = new float[cols][rows];
-        Action[][] policy = new Action[cols][rows];
+		AnytimeValueIteration.Snapshot latest = anytime.await(deadline, TimeUnit.NANOSECONDS);
+		if (latest == null) {
+			bound = Double.POSITIVE_INFINITY;
+			return AnytimeValueIteration.greedy(map, x, y);
+		}
 
-        int i = 0;
-        double delta;
+		solution = latest.getSolution();
+		policy = solution;
+		bound = latest.getBound();
+		return policy.action(x, y);
+	}
 
-        do {
+	/**
+	 * Starts solving the map in the background before the first step, only in the anytime mode.
+	 * @param map the map of the environment
+	 */
+	public void start(CellContent[][] map) {
+		start(adapt(map, new ArrayList<Point2i>()));
+	}
 
-            i++;
-            delta = 0.0;
+	/**
+	 * @see #start(CellContent[][])
+	 */
+	public void start(GridMap map) {
+		if (deadline < 0) {
+			return;
+		}
+		if (anytime == null || !anytime.solves(map)) {
+			if (anytime != null) {
+				anytime.cancel();
+			}
+			anytime = AnytimeValueIteration.start(map);
+		}
+	}
 
-            U = newU;
-            newU = new float[cols][rows];
+	/**
+	 * Compute an optimal policy for the agent.
+	 *
+	 * A policy solved by the agent is compressed (see {@link RunLengthPolicy#compress(Policy)}),
+	 * the steps are answered from the compressed policy and only that is cached.
+	 * The value function is kept for {@link #update(GridMap, Collection)}.
+	 * @param map map of the environment
+	 * @param x the x-coordinate of the current position of robot
+	 * @param y the y-coordinate of the current position of robot
+	 */
+	private void computePolicy(GridMap map, int x, int y) {
+		if (snapshot != null) {
+			Solution loaded = load(map);
+			if (loaded != null) {
+				// the snapshot is read only if it was solved with the current slip model
+				slipModel = WorldModel.getSlipModel();
+				solution = loaded;
+				policy = loaded;
+				DebugVis.setPolicy(policy);
+				return;
+			}
+		}
 
-            // for each state (x, y)
-            for (int x = 0; x < cols; x++) { // x-axis
-                for (int y = 0; y < rows; y++) { // y-axis
+		Policy cached = cache != null ? cache.get(map, solver) : null;
+		if (cached != null && cached.action(x, y) != null) {
+			solution = null;
+			policy = cached;
+		} else {
+			slipModel = WorldModel.getSlipModel();
+			solution = solver.solve(map, map.index(x, y));
+			policy = RunLengthPolicy.compress(solution);
+			if (cache != null) {
+				cache.put(map, solver, policy);
+			}
+		}
+		DebugVis.setPolicy(policy);
+	}
 
-                    Point2i s = new Point2i(x, y);
+	/**
+	 * @return solution of the snapshot, null if it belongs to another map
+	 */
+	private Solution load(GridMap map) {
+		Path file = snapshot;
+		// the snapshot is tried only once
+		snapshot = null;
+		try {
+			return SolutionSnapshot.read(file, map);
+		} catch (IOException e) {
+			throw new RuntimeException("cannot load the snapshot " + file, e);
+		}
+	}
 
-                    float maxQ = Float.NEGATIVE_INFINITY;
-                    Action maxAction = Action.NORTH;
+	/**
+	 * Notifies the agent that some cells of the map have changed (e.g. a door opened or a pit appeared).
+	 *
+	 * The policy is not recomputed from scratch: the value function of the previous map is used
+	 * as a warm start and backups propagate only from the changed cells to the states affected by them.
+	 * The changed map is compiled with the slip model the previous map was solved with. A solution that
+	 * covers only the states reachable from the start is not a warm start, the map is solved again on the next step.
+	 *
+	 * @param map the map of the environment after the change
+	 * @param changedCells the cells whose contents have changed
+	 */
+	public void update(CellContent[][] map, Collection<Point2i> changedCells) {
+		update(adapt(map, new ArrayList<Point2i>()), changedCells);
+	}
 
-                    for (Action a : Action.values()) {
+	/**
+	 * @see #update(CellContent[][], Collection)
+	 */
+	public void update(GridMap map, Collection<Point2i> changedCells) {
+		if (anytime != null) {
+			// solve the current contents of the map again from scratch
+			anytime.cancel();
+			anytime = null;
+			start(map);
+			return;
+		}
 
-                        float Q = 0f;
-                        for (Transition t : WorldModel.getTransitions(s, a, map)) {
-                            Q += t.probability * (t.reward + GAMMA * U[t.successorState.x][t.successorState.y]);
-                        }
+		if (solution == null || solution.isPartial()) {
+			// nothing solved yet, no value function to start from (the policy was cached)
+			// or the value function covers only the states reachable from the previous start,
+			// the policy will be computed for the current map from scratch on the next step
+			solution = null;
+			policy = null;
+			return;
+		}
 
-                        if (Q > maxQ) {
-                            maxQ = Q;
-                            maxAction = a;
-                        }
+		// the global slip model may have been changed since, the change of the map must not change the actions
+		CompiledWorldModel model = WorldModel.recompile(map, slipModel);
+		solution = PrioritizedSweepingSolver.resolve(model, solution, WorldModel.affectedStates(model, changedCells));
+		policy = RunLengthPolicy.compress(solution);
+		if (cache != null) {
+			cache.put(map, solver, policy);
+		}
+		DebugVis.setPolicy(policy);
+	}
 
-                    }
+	/**
+	 * Returns compact copy of the legacy map. The copy is reused while the same array is passed,
+	 * the cells of the array modified in place since the last call are set in the copy too.
+	 * @param map the legacy map
+	 * @param changedCells the cells modified in place are added to it
+	 * @return copy of the current contents of the map
+	 */
+	private GridMap adapt(CellContent[][] map, Collection<Point2i> changedCells) {
+		if (adaptedMap != map || adapted.getCols() != map.length || adapted.getRows() != map[0].length) {
+			adapted = GridMap.of(map);
+			adaptedMap = map;
+			return adapted;
+		}
+		for (int y = 0; y < adapted.getRows(); y++) {
+			for (int x = 0; x < adapted.getCols(); x++) {
+				if (adapted.get(x, y) != map[x][y]) {
+					adapted.set(x, y, map[x][y]);
+					changedCells.add(new Point2i(x, y));
+				}
+			}
+		}
+		return adapted;
+	}
 
-                    newU[x][y] = maxQ;
-                    policy[x][y] = maxAction;
+	/**
+	 * @return the solution the policy was extracted from, null before the first step
+	 * and when the policy was taken from the cache
+	 */
+	public Solution getSolution() {
+		return solution;
+	}
 
-                    double diff = Math.abs(newU[x][y] - U[x][y]);
-                    if (diff > delta) {
-                        delta = diff;
-                    }
+	/**
+	 * @return the policy the last step was answered from, null before the first step
+	 */
+	public Policy getPolicy() {
+		return policy;
+	}
 
-                }
-            }
+	public Solver getSolver() {
+		return solver;
+	}
 
-        } while (delta >= EPSILON * (1.0 - GAMMA) / GAMMA && i < MAX_ITERS);
-		
-		return policy;
+	/**
+	 * @return bound on the loss of the policy the last step was answered from
+	 * (see {@link AnytimeValueIteration.Snapshot#getBound()}), infinite after a greedy fallback,
+	 * 0 outside of the anytime mode
+	 */
+	public double getBound() {
+		return bound;
 	}
 	
 }
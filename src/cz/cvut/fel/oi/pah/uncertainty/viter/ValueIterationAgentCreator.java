@@ -1,6 +1,7 @@
 package cz.cvut.fel.oi.pah.uncertainty.viter;
 
 import java.awt.Color;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -20,6 +21,10 @@ import cz.agents.alite.vis.element.Line;
 import cz.agents.alite.vis.element.aggregation.LineElements;
 import cz.agents.alite.vis.layer.common.ColorLayer;
 import cz.agents.alite.vis.layer.terminal.ArrowLayer;
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
 
 public class ValueIterationAgentCreator {
 
@@ -29,8 +34,10 @@ public class ValueIterationAgentCreator {
 	final static double OBST_RATIO = 0.2;
 	final static int STEPS = 200;
 	private static final double PIT_RATIO = 0.05;
+	private static final int MPI_SWEEPS = 10;
 
-	CellContent[][] map; // First dimension is columns, second dimension is rows
+	GridMap map;
+	SlipModel.Compiled slip;
 	int x;
 	int y;
 	
@@ -38,6 +45,12 @@ public class ValueIterationAgentCreator {
 	int lastY;
 	Action lastAction = null;
 
+	final Solver solver;
+
+	ValueIterationAgentCreator(Solver solver) {
+		this.solver = solver;
+	}
+
     private void initVisualization() {
         VisManager.setInitParam("Trajectory Tools Vis", 1024, 768, 200, 200);
         VisManager.setSceneParam(new SceneParams() {
@@ -89,7 +102,7 @@ public class ValueIterationAgentCreator {
 				Collection<Rectangle> regions = new LinkedList<Rectangle>();
 		    	for (int x=0; x < COLS; x++) {
 		    		for (int y=0; y < ROWS; y++){
-		    			if (map[x][y] == CellContent.OBSTACLE) {
+		    			if (map.get(x, y) == CellContent.OBSTACLE) {
 		    				regions.add(new Rectangle(
 		    						new Point(x*CELLSIZE - CELLSIZE/2, y*CELLSIZE - CELLSIZE/2),
 		    						new Point(x*CELLSIZE + CELLSIZE/2, y*CELLSIZE + CELLSIZE/2)
@@ -110,7 +123,7 @@ public class ValueIterationAgentCreator {
 				Collection<Circle> regions = new LinkedList<Circle>();
 				for (int x=0; x < COLS; x++) {
 		    		for (int y=0; y < ROWS; y++){
-		    			if (map[x][y] == CellContent.GOLD) {
+		    			if (map.get(x, y) == CellContent.GOLD) {
 		    				regions.add(new Circle(new Point(x*CELLSIZE, y*CELLSIZE), CELLSIZE/2));
 		    			}
 		    		}
@@ -127,7 +140,7 @@ public class ValueIterationAgentCreator {
 				Collection<Circle> regions = new LinkedList<Circle>();
 				for (int x=0; x < COLS; x++) {
 		    		for (int y=0; y < ROWS; y++){
-		    			if (map[x][y] == CellContent.PIT) {
+		    			if (map.get(x, y) == CellContent.PIT) {
 		    				regions.add(new Circle(new Point(x*CELLSIZE, y*CELLSIZE), CELLSIZE/2));
 		    			}
 
@@ -193,11 +206,17 @@ public class ValueIterationAgentCreator {
 
     	for (int i=0; i<RUNS; i++) {
     		generateMap(new Random(3));
-	    	double utility = simulate(new ValueIterationAgent(), new Random(i), 200);
+    		slip = WorldModel.getSlipModel().compile(map);
+    		ValueIterationAgent agent = new ValueIterationAgent(solver);
+	    	double utility = simulate(agent, new Random(i), 200);
 	    	sumUtility += utility;
-	    	System.out.println(">>> Simulation run finished. Utility: " + utility);
+	    	Solution solution = agent.getSolution();
+	    	// no solution if the policy was taken from the cache
+	    	String stats = solution != null ? solution.getSweeps() + " sweeps, " + solution.getBackups() + " backups" : "cached policy";
+	    	System.out.println(">>> Simulation run finished. Utility: " + utility + " (" + solver + ": " + stats + ")");
     	}
     	System.out.println(">>> " + RUNS + " simulation runs finished. Average utility: " + (sumUtility/RUNS) + "."  );
+    	System.out.println(">>> " + PolicyCache.getShared());
     }
 
     private double simulate(ValueIterationAgent agent, Random rnd, int visualizationDelay) {
@@ -226,13 +245,13 @@ public class ValueIterationAgentCreator {
     		updatePosition(action, rnd);
     		utility -= 1.0; 
 
-    		if (map[x][y] == CellContent.GOLD) {
+    		if (map.get(x, y) == CellContent.GOLD) {
     			System.out.println("Your robot found gold.");
     			utility += 100;
     			return utility;
     		}
 
-    		if (map[x][y] == CellContent.PIT) {
+    		if (map.get(x, y) == CellContent.PIT) {
     			System.out.println("Your robot fell into a pit.");
     			utility -= 100;
     			return utility;
@@ -245,80 +264,25 @@ public class ValueIterationAgentCreator {
 
 
 	private void updatePosition(Action action, Random rnd) {
-		int newX = x;
-		int newY = y;
-		
-		if (action == Action.NORTH) {
-			double r = rnd.nextDouble();
-			if (r < 0.8)
-				newY -= 1;
-			else if (r < 0.9) {
-				newX -= 1;
-			} else {
-				newX += 1;
-			}
-		}
-
-		if (action == Action.SOUTH) {
-			double r = rnd.nextDouble();
-			if (r < 0.8)
-				newY += 1;
-			else if (r < 0.9) {
-				newX -= 1;
-			} else {
-				newX += 1;
-			}
-		}
-
-		if (action == Action.EAST) {
-			double r = rnd.nextDouble();
-			if (r < 0.8)
-				newX += 1;
-			else if (r < 0.9) {
-				newY -= 1;
-			} else {
-				newY += 1;
-			}
-		}
-
-		if (action == Action.WEST) {
-			double r = rnd.nextDouble();
-			if (r < 0.8)
-				newX -= 1;
-			else if (r < 0.9) {
-				newY -= 1;
-			} else {
-				newY += 1;
-			}
-		}
-
-		if (newX >= 0 && newX < COLS && newY >= 0 && newY < ROWS && map[newX][newY] != CellContent.OBSTACLE) {
-			x = newX;
-			y = newY;
-		}
-
+		int cell = slip.sample(map.index(x, y), action, rnd.nextDouble());
+		x = map.x(cell);
+		y = map.y(cell);
 	}
 
 	private void generateMap(Random rnd) {
     	x = 0;
     	y = 0;
 
-    	map = new CellContent[COLS][ROWS];
-
-    	for (int x=0; x < COLS; x++) {
-    		for (int y=0; y < ROWS; y++){
-    			map[x][y] = CellContent.EMPTY;
-    		}
-    	}
+    	map = new GridMap(COLS, ROWS);
 
-    	map[13][12] = CellContent.GOLD;
+    	map.set(13, 12, CellContent.GOLD);
 
 
     	for (int x=0; x < COLS; x++) {
     		for (int y=0; y < ROWS; y++){
-    			if (map[x][y] == CellContent.EMPTY) {
+    			if (map.get(x, y) == CellContent.EMPTY) {
 	    			if (rnd.nextDouble() < OBST_RATIO) {
-	    				map[x][y] = CellContent.OBSTACLE;
+	    				map.set(x, y, CellContent.OBSTACLE);
 	    			}
     			}
     		}
@@ -326,9 +290,9 @@ public class ValueIterationAgentCreator {
 
     	for (int x=0; x < COLS; x++) {
     		for (int y=0; y < ROWS; y++){
-    			if (map[x][y] == CellContent.EMPTY) {
+    			if (map.get(x, y) == CellContent.EMPTY) {
 	    			if (rnd.nextDouble() < PIT_RATIO) {
-	    				map[x][y] = CellContent.PIT;
+	    				map.set(x, y, CellContent.PIT);
 	    			}
     			}
     		}
@@ -336,8 +300,42 @@ public class ValueIterationAgentCreator {
 
 	}
 
+	private static Solver createSolver(String name) {
+		switch (name) {
+			case "vi":	return new ValueIterationSolver();
+			case "vi-h":	return new ValueIterationSolver(true);
+			case "gs":	return new GaussSeidelSolver();
+			case "ps":	return new PrioritizedSweepingSolver();
+			case "pvi":	return new ParallelValueIterationSolver();
+			case "pi":	return new PolicyIterationSolver();
+			case "mpi":	return new PolicyIterationSolver(MPI_SWEEPS);
+			case "tvi":	return new TopologicalValueIterationSolver();
+			case "svi":	return new StencilValueIterationSolver();
+			case "svi-mmap":	return new StencilValueIterationSolver(Paths.get(System.getProperty("java.io.tmpdir")));
+			case "svi-z":	return new LayoutValueIterationSolver(GridLayout.Order.MORTON);
+			case "svi-tiled":	return new LayoutValueIterationSolver(GridLayout.Order.TILED);
+			case "lrtdp":	return new LrtdpSolver();
+			case "mg":	return new MultigridSolver();
+			case "cvi":	return new CompactValueIterationSolver();
+			default:	throw new IllegalArgumentException("unknown solver: " + name);
+		}
+	}
+
+	private static SlipModel createSlipModel(String name) {
+		switch (name) {
+			case "standard":	return SlipModel.STANDARD;
+			case "drift":	return new SlipModel.Drift(0.8f);
+			default:	throw new IllegalArgumentException("unknown slip model: " + name);
+		}
+	}
+
+	/**
+	 * @param args optional name of the solver: vi (default), vi-h, gs, ps, pvi, pi, mpi, tvi, svi, svi-mmap, svi-z, svi-tiled, lrtdp, mg, cvi,
+	 * and optional name of the slip model: standard (default), drift
+	 */
 	public static void main(String[] args) {
-        new ValueIterationAgentCreator().create();
+		WorldModel.setSlipModel(createSlipModel(args.length > 1 ? args[1] : "standard"));
+        new ValueIterationAgentCreator(createSolver(args.length > 0 ? args[0] : "vi")).create();
     }
 
 }
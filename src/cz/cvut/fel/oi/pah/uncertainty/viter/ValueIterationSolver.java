@@ -0,0 +1,76 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+/**
+ * Synchronous (Jacobi) value iteration:
+ *
+ * V_0(s) = 0 for all s in S
+ * V_{i+1}(s) = max_{a in A(s)} Q_i(s, a)
+ *
+ * or, optionally, from the heuristic V_0 of {@link Solver#initialValues(CompiledWorldModel)}.
+ */
+public class ValueIterationSolver extends Solver {
+
+    private final boolean initialize;
+
+    public ValueIterationSolver() {
+        this(false);
+    }
+
+    /**
+     * @param initialize true to start from the value of the shortest deterministic path to GOLD instead of 0
+     */
+    public ValueIterationSolver(boolean initialize) {
+        this.initialize = initialize;
+    }
+
+    @Override
+    public Solution solve(CompiledWorldModel model) {
+
+        int states = model.states();
+
+        // the buffers are swapped at the beginning of each sweep
+        float[] U = new float[states];
+        float[] newU = initialize ? initialValues(model) : new float[states];
+        byte[] policy = new byte[states];
+
+        int i = 0;
+        double delta;
+
+        do {
+
+            i++;
+            delta = 0.0;
+
+            // the new values of all states are written in each sweep, so the buffers can be swapped
+            float[] tmp = U;
+            U = newU;
+            newU = tmp;
+
+            // for each state s = y * cols + x
+            for (int s = 0; s < states; s++) {
+
+                newU[s] = backup(model, U, s, policy);
+
+                double diff = Math.abs(newU[s] - U[s]);
+                if (diff > delta) {
+                    delta = diff;
+                }
+
+            }
+
+        } while (delta >= THRESHOLD && i < MAX_ITERS);
+
+        return new Solution(model, newU, policy, i, (long) i * states);
+    }
+
+    @Override
+    public String getConfiguration() {
+        return initialize ? super.getConfiguration() + "(initialized)" : super.getConfiguration();
+    }
+
+    @Override
+    public String toString() {
+        return initialize ? getClass().getSimpleName() + "(initialized)" : getClass().getSimpleName();
+    }
+
+}
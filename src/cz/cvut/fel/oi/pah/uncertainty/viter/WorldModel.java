@@ -1,12 +1,29 @@
 package cz.cvut.fel.oi.pah.uncertainty.viter;
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import javax.vecmath.Point2i;
 
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
 
 public class WorldModel {
+
+	private static SlipModel slipModel = SlipModel.STANDARD;
+
+	// the last compiled map, the value of its modification counter and its copy the model was built from
+	private static GridMap compiledMap;
+	private static int compiledModifications;
+	private static GridMap compiledContents;
+	private static SlipModel compiledSlipModel;
+	private static CompiledWorldModel compiled;
+
 	/**
 	 * Returns a set of all transitions that may occur if 
 	 * the given action is performed in the given s.
@@ -17,155 +34,239 @@ public class WorldModel {
 	 * @return the set of transition, where is transition is assigned a probability, next s and the reward received.
 	 */
 	public static Set<Transition> getTransitions(Point2i state, Action action, CellContent[][] map) {
+		return getTransitions(state, action, compile(map));
+	}
+
+	/**
+	 * @see #getTransitions(Point2i, Action, CellContent[][])
+	 */
+	public static Set<Transition> getTransitions(Point2i state, Action action, GridMap map) {
+		return getTransitions(state, action, compile(map));
+	}
+
+	private static Set<Transition> getTransitions(Point2i state, Action action, CompiledWorldModel model) {
 		Set<Transition> transitions = new HashSet<>();
-		
-		if (map[state.x][state.y] == CellContent.EMPTY) {
-			
-			switch (action) {
-				case NORTH:
-				{
-					float prob = 0.8f;
-					Point2i succState = nextState(state, Action.NORTH, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				{
-					float prob = 0.1f;
-					Point2i succState = nextState(state, Action.EAST, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				{
-					float prob = 0.1f;
-					Point2i succState = nextState(state, Action.WEST, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				break;
-				
-				case SOUTH:
-				{
-					float prob = 0.8f;
-					Point2i succState = nextState(state, Action.SOUTH, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				{
-					float prob = 0.1f;
-					Point2i succState = nextState(state, Action.EAST, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				{
-					float prob = 0.1f;
-					Point2i succState = nextState(state, Action.WEST, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				break;
-				
-				case EAST:
-				{
-					float prob = 0.8f;
-					Point2i succState = nextState(state, Action.EAST, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				{
-					float prob = 0.1f;
-					Point2i succState = nextState(state, Action.NORTH, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				{
-					float prob = 0.1f;
-					Point2i succState = nextState(state, Action.SOUTH, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				break;
-				
-				case WEST:
-				{
-					float prob = 0.8f;
-					Point2i succState = nextState(state, Action.WEST, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				{
-					float prob = 0.1f;
-					Point2i succState = nextState(state, Action.NORTH, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}
-				{
-					float prob = 0.1f;
-					Point2i succState = nextState(state, Action.SOUTH, map);
-					float reward = reward(state, succState, map);
-					transitions.add(new Transition(prob, succState, reward));
-				}	
-				break;
-			}
-		} else {
-			transitions.add(new Transition(1f, state, 0));
+
+		int s = model.index(state.x, state.y);
+		for (int k = model.begin(s, action); k < model.end(s, action); k++) {
+			int succ = model.successors[k];
+			transitions.add(new Transition(model.probabilities[k], new Point2i(model.x(succ), model.y(succ)), model.rewards[k]));
 		}
-		
+
 		return transitions;
 	}
-	
-	private static float reward(Point2i fromState, Point2i toState, CellContent[][] map) {
 
-		if (map[toState.x][toState.y] == CellContent.GOLD) {
-			return 100-1;
+	/**
+	 * @return the slip model the maps are compiled with unless another one is given
+	 */
+	public static synchronized SlipModel getSlipModel() {
+		return slipModel;
+	}
+
+	/**
+	 * Sets the slip model the maps are compiled with unless another one is given.
+	 */
+	public static synchronized void setSlipModel(SlipModel slipModel) {
+		WorldModel.slipModel = slipModel;
+		compiledMap = null;
+		compiledContents = null;
+	}
+
+	/**
+	 * Returns the transition model of the given map compiled into flat arrays.
+	 * The last compiled model is cached, so repeated calls for the same map are cheap.
+	 * A map modified in place since it was compiled is compiled again.
+	 *
+	 * @param map the map of the environment
+	 * @return compiled transition model
+	 */
+	public static synchronized CompiledWorldModel compile(GridMap map) {
+		return compile(map, slipModel);
+	}
+
+	/**
+	 * Returns the transition model of the given map and slip model compiled into flat arrays.
+	 *
+	 * @param map the map of the environment
+	 * @param slipModel the moves of the actions
+	 * @return compiled transition model
+	 */
+	public static synchronized CompiledWorldModel compile(GridMap map, SlipModel slipModel) {
+		if (compiledMap != map || compiledModifications != map.getModifications() || compiledSlipModel != slipModel) {
+			// the model is built from a copy, so it keeps describing the contents it was compiled from
+			GridMap contents = map.copy();
+			compiled = build(contents, slipModel);
+			compiledMap = map;
+			compiledModifications = map.getModifications();
+			compiledContents = contents;
+			compiledSlipModel = slipModel;
 		}
+		return compiled;
+	}
 
-		if (map[toState.x][toState.y] == CellContent.PIT) {
-			return -100-1;
+	/**
+	 * The legacy array may be modified in place without notice, so its contents are compared
+	 * with the ones of the cached model on each call, which takes time linear in the size of the map.
+	 * Callers that query the model repeatedly should adapt the array by {@link GridMap#of(CellContent[][])} once.
+	 *
+	 * @see #compile(GridMap)
+	 */
+	public static synchronized CompiledWorldModel compile(CellContent[][] map) {
+		GridMap contents = GridMap.of(map);
+		if (compiledContents == null || !compiledContents.equals(contents) || compiledSlipModel != slipModel) {
+			compiled = build(contents, slipModel);
+			compiledMap = contents;
+			compiledModifications = contents.getModifications();
+			compiledContents = contents;
+			compiledSlipModel = slipModel;
 		}
+		return compiled;
+	}
 
-		if (map[toState.x][toState.y] == CellContent.EMPTY) {
-			return -1;
+	/**
+	 * Compiles the map again, e.g. after it has been modified in place.
+	 *
+	 * @param map the map of the environment
+	 * @return compiled transition model of the current contents of the map
+	 */
+	public static synchronized CompiledWorldModel recompile(GridMap map) {
+		return recompile(map, slipModel);
+	}
+
+	/**
+	 * Compiles the map again with the given slip model, e.g. the one a previous solution of the map was solved with.
+	 *
+	 * @param map the map of the environment
+	 * @param slipModel the moves of the actions
+	 * @return compiled transition model of the current contents of the map
+	 */
+	public static synchronized CompiledWorldModel recompile(GridMap map, SlipModel slipModel) {
+		compiledMap = null;
+		compiledContents = null;
+		return compile(map, slipModel);
+	}
+
+	/**
+	 * Returns the states whose transitions or rewards may differ after the given cells of the map change,
+	 * i.e. the changed cells and the cells of their 8-neighbourhood an action may move to them from.
+	 *
+	 * @param model compiled model of the map
+	 * @param cells the changed cells
+	 * @return states affected by the change
+	 */
+	static int[] affectedStates(CompiledWorldModel model, Collection<Point2i> cells) {
+		Set<Integer> affected = new LinkedHashSet<>();
+		for (Point2i cell : cells) {
+			affected.add(model.index(cell.x, cell.y));
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dx = -1; dx <= 1; dx++) {
+					int x = cell.x + dx;
+					int y = cell.y + dy;
+					if (x >= 0 && x < model.getCols() && y >= 0 && y < model.getRows()) {
+						affected.add(model.index(x, y));
+					}
+				}
+			}
 		}
 
-		if (map[toState.x][toState.y] == CellContent.OBSTACLE) {
-			return -1;
+		int[] states = new int[affected.size()];
+		int i = 0;
+		for (int s : affected) {
+			states[i++] = s;
 		}
+		return states;
+	}
 
-		throw new RuntimeException();
+	/**
+	 * Returns a 64-bit content hash (FNV-1a) of the map.
+	 *
+	 * @param map the map of the environment
+	 * @return fingerprint of the dimensions and the contents of the map
+	 */
+	public static long fingerprint(GridMap map) {
+		long hash = 0xcbf29ce484222325L;
+		hash = (hash ^ map.getCols()) * 0x100000001b3L;
+		hash = (hash ^ map.getRows()) * 0x100000001b3L;
+		for (int i = 0; i < map.size(); i++) {
+			hash = (hash ^ map.ordinal(i)) * 0x100000001b3L;
+		}
+		return hash;
 	}
 
+	/**
+	 * Compiles the map without caching the result, e.g. for auxiliary models that must not
+	 * evict the model of the environment from the cache.
+	 */
+	static CompiledWorldModel build(GridMap map, SlipModel slipModel) {
+		SlipModel.Compiled slip = slipModel.compile(map);
+		int states = map.size();
+		int pairs = states * CompiledWorldModel.ACTIONS;
 
+		int size = 0;
+		for (int s = 0; s < states; s++) {
+			if (map.get(s) == CellContent.EMPTY) {
+				for (Action action : Action.values()) {
+					size += slip.end(s, action) - slip.begin(s, action);
+				}
+			} else {
+				size += CompiledWorldModel.ACTIONS;
+			}
+		}
+
+		int[] offsets = new int[pairs + 1];
+		int[] successors = new int[size];
+		float[] probabilities = new float[size];
+		float[] rewards = new float[size];
+
+		int k = 0;
+		int pair = 0;
+		for (int s = 0; s < states; s++) {
+			boolean empty = map.get(s) == CellContent.EMPTY;
+			for (Action action : Action.values()) {
+				offsets[pair++] = k;
+				if (empty) {
+					for (int m = slip.begin(s, action); m < slip.end(s, action); m++) {
+						int succ = slip.target(s, m);
+						successors[k] = succ;
+						probabilities[k] = slip.probability(m);
+						rewards[k] = reward(map.get(succ));
+						k++;
+					}
+				} else {
+					successors[k] = s;
+					probabilities[k] = 1f;
+					rewards[k] = 0;
+					k++;
+				}
+			}
+		}
+		offsets[pair] = k;
 
-	private static Point2i nextState(Point2i state, Action action, CellContent[][] map) {
-		Point2i desiredTarget;
-		Point2i actualTarget;
+		return new CompiledWorldModel(map, slipModel, offsets, successors, probabilities, rewards);
+	}
 
-		switch(action) {
-			case NORTH:
-				desiredTarget = new Point2i(state.x,state.y-1);
-				break;
+	/**
+	 * @return reward received when a transition ends in a cell with the given content
+	 */
+	static float reward(CellContent target) {
 
-			case SOUTH:
-				desiredTarget = new Point2i(state.x,state.y+1);
-				break;
+		if (target == CellContent.GOLD) {
+			return 100-1;
+		}
 
-			case WEST:
-				desiredTarget = new Point2i(state.x-1,state.y);
-				break;
+		if (target == CellContent.PIT) {
+			return -100-1;
+		}
 
-			case EAST:
-				desiredTarget = new Point2i(state.x+1,state.y);
-				break;
-			default:
-				throw new RuntimeException();
+		if (target == CellContent.EMPTY) {
+			return -1;
 		}
 
-		if (desiredTarget.x < 0 || desiredTarget.x >= map.length || desiredTarget.y < 0 || desiredTarget.y >= map[0].length ||  map[desiredTarget.x][desiredTarget.y] == CellContent.OBSTACLE) {
-			actualTarget = new Point2i(state.x,state.y);
-		} else {
-			actualTarget = desiredTarget;
+		if (target == CellContent.OBSTACLE) {
+			return -1;
 		}
 
-		return actualTarget;
+		throw new RuntimeException();
 	}
+
 }
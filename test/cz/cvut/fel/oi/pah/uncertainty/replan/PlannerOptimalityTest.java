@@ -0,0 +1,141 @@
+package cz.cvut.fel.oi.pah.uncertainty.replan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * The optimal planners find paths over the safe cells as short as the breadth-first distances
+ * of {@link DistanceField}, also when the same planner is asked again from other starts,
+ * as {@link ReplanAgent} does after a slip, and they find no path where there is none.
+ */
+public class PlannerOptimalityTest {
+
+	private static final int COLS = 40;
+	private static final int ROWS = 30;
+	private static final int MAPS = 5;
+	private static final int STARTS = 20;
+
+	private static GridMap randomMap(Random rnd) {
+		GridMap map = new GridMap(COLS, ROWS);
+		for (int i = 0; i < map.size(); i++) {
+			double r = rnd.nextDouble();
+			if (r < 0.25) {
+				map.set(i, CellContent.OBSTACLE);
+			} else if (r < 0.3) {
+				map.set(i, CellContent.PIT);
+			}
+		}
+		return map;
+	}
+
+	private static int safeCell(GridMap map, Random rnd) {
+		while (true) {
+			int cell = rnd.nextInt(map.size());
+			if (map.safe(map.x(cell), map.y(cell))) {
+				return cell;
+			}
+		}
+	}
+
+	/**
+	 * Checks the plan against the distance of the start: it must lead over safe cells to the goal
+	 * in exactly that many moves, or be empty if the goal cannot be reached.
+	 */
+	private static void assertShortest(String planner, GridMap map, List<Action> plan, int start, int goal,
+			DistanceField field) {
+		int distance = field.distance(start);
+		if (distance == DistanceField.UNREACHABLE) {
+			assertTrue(planner + ": plan to an unreachable goal from " + start, plan.isEmpty());
+			return;
+		}
+		assertEquals(planner + ": length of the plan from " + start, distance, plan.size());
+
+		int x = map.x(start);
+		int y = map.y(start);
+		for (Action action : plan) {
+			x += action.getDirection().x;
+			y += action.getDirection().y;
+			assertTrue(planner + ": unsafe cell (" + x + ", " + y + ") on the plan from " + start, map.safe(x, y));
+		}
+		assertEquals(planner + ": end of the plan from " + start, goal, map.index(x, y));
+	}
+
+	private static void assertOptimal(Planner planner) {
+		Random rnd = new Random(11);
+		for (int i = 0; i < MAPS; i++) {
+			GridMap map = randomMap(rnd);
+			int goal = safeCell(map, rnd);
+			map.set(goal, CellContent.GOLD);
+			DistanceField field = new DistanceField(map, goal);
+
+			for (int k = 0; k < STARTS; k++) {
+				int start = safeCell(map, rnd);
+				List<Action> plan = planner.plan(map, start, goal);
+				assertShortest(planner.toString(), map, plan, start, goal, field);
+			}
+		}
+	}
+
+	@Test
+	public void dStarLite() {
+		assertOptimal(new DStarLitePlanner());
+	}
+
+	@Test
+	public void jumpPoint() {
+		assertOptimal(new JumpPointPlanner());
+	}
+
+	@Test
+	public void jumpPointPlus() {
+		assertOptimal(new JumpPointPlanner(true));
+	}
+
+	@Test
+	public void distanceField() {
+		assertOptimal(new DistanceFieldPlanner());
+	}
+
+	/**
+	 * D* Lite repairs its search after cells on the current path are blocked.
+	 */
+	@Test
+	public void dStarLiteUpdate() {
+		Random rnd = new Random(13);
+		GridMap map = randomMap(rnd);
+		int goal = safeCell(map, rnd);
+		map.set(goal, CellContent.GOLD);
+		DistanceField initial = new DistanceField(map, goal);
+		int start = safeCell(map, rnd);
+		while (initial.distance(start) < COLS / 2) {
+			start = safeCell(map, rnd);
+		}
+
+		DStarLitePlanner planner = new DStarLitePlanner();
+		List<Action> plan = planner.plan(map, start, goal);
+		for (int k = 0; k < 5 && plan.size() > 2; k++) {
+			// block the middle of the path
+			int x = map.x(start);
+			int y = map.y(start);
+			for (int i = 0; i < plan.size() / 2; i++) {
+				x += plan.get(i).getDirection().x;
+				y += plan.get(i).getDirection().y;
+			}
+			map.set(x, y, CellContent.OBSTACLE);
+			planner.update(map.index(x, y));
+
+			plan = planner.plan(map, start, goal);
+			assertShortest(planner.toString(), map, plan, start, goal, new DistanceField(map, goal));
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * Policy iteration on a 3x3 map with GOLD in the corner (0, 0) and an obstacle next to it at (1, 0).
+ * The initial policy (NORTH everywhere) must be evaluated before it is improved, otherwise
+ * the first improvement keeps NORTH in the cells that only see the zero values of the initial one.
+ */
+public class PolicyIterationSolverTest {
+
+    private static GridMap corner() {
+        GridMap map = new GridMap(3, 3);
+        map.set(0, 0, CellContent.GOLD);
+        map.set(1, 0, CellContent.OBSTACLE);
+        return map;
+    }
+
+    private static void assertSameAsValueIteration(Solver solver) {
+        GridMap map = corner();
+        CompiledWorldModel model = WorldModel.compile(map);
+        Solution expected = new ValueIterationSolver().solve(model);
+        Solution actual = solver.solve(model);
+
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                String cell = solver + ", cell (" + x + ", " + y + ")";
+                assertEquals(cell, expected.value(x, y), actual.value(x, y), 2 * Solver.EPSILON);
+                if (map.get(x, y) == CellContent.EMPTY) {
+                    assertEquals(cell, expected.action(x, y), actual.action(x, y));
+                }
+            }
+        }
+        // the cell below the gold moves into it
+        assertEquals(Action.NORTH, actual.action(0, 1));
+    }
+
+    @Test
+    public void policyIteration() {
+        assertSameAsValueIteration(new PolicyIterationSolver());
+    }
+
+    @Test
+    public void modifiedPolicyIteration() {
+        assertSameAsValueIteration(new PolicyIterationSolver(1));
+        assertSameAsValueIteration(new PolicyIterationSolver(10));
+    }
+
+}
@@ -0,0 +1,74 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+
+/**
+ * A snapshot read back for the same map returns the values, the policy and the statistics it was written with,
+ * for another map it returns null.
+ */
+public class SolutionSnapshotTest {
+
+    private static void assertRoundTrip(GridMap map, Solution solution) throws IOException {
+        Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            SolutionSnapshot.write(file, map, solution);
+            Solution read = SolutionSnapshot.read(file, map);
+            assertNotNull(read);
+
+            assertEquals(solution.getSweeps(), read.getSweeps());
+            assertEquals(solution.getBackups(), read.getBackups());
+            for (int y = 0; y < map.getRows(); y++) {
+                for (int x = 0; x < map.getCols(); x++) {
+                    String cell = "cell (" + x + ", " + y + ")";
+                    assertEquals(cell, solution.value(x, y), read.value(x, y), 0.0);
+                    assertEquals(cell, solution.action(x, y), read.action(x, y));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        GridMap map = SolverEquivalenceTest.randomMap(new Random(3), 40, 25);
+        assertRoundTrip(map, new ValueIterationSolver().solve(WorldModel.compile(map)));
+    }
+
+    @Test
+    public void partialPolicyRoundTrip() throws IOException {
+        GridMap map = SolverEquivalenceTest.randomMap(new Random(4), 40, 25);
+        int start = 0;
+        map.set(start, CellContent.EMPTY);
+        // the cells without a state have no action, also after the round trip
+        assertRoundTrip(map, new CompactValueIterationSolver().solve(map, start));
+    }
+
+    @Test
+    public void otherMap() throws IOException {
+        GridMap map = SolverEquivalenceTest.randomMap(new Random(5), 40, 25);
+        Solution solution = new ValueIterationSolver().solve(WorldModel.compile(map));
+        Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            SolutionSnapshot.write(file, map, solution);
+            GridMap other = map.copy();
+            other.set(0, other.get(0) == CellContent.PIT ? CellContent.EMPTY : CellContent.PIT);
+            assertNull(SolutionSnapshot.read(file, other));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package cz.cvut.fel.oi.pah.uncertainty.viter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import cz.cvut.fel.oi.pah.uncertainty.grid.Action;
+import cz.cvut.fel.oi.pah.uncertainty.grid.CellContent;
+import cz.cvut.fel.oi.pah.uncertainty.grid.GridMap;
+import cz.cvut.fel.oi.pah.uncertainty.grid.SlipModel;
+
+/**
+ * Every solver computes the values of {@link ValueIterationSolver} on random maps: both are within
+ * EPSILON of the optimal values, so they differ by less than 2 * EPSILON. The solvers of a part
+ * of the map are compared in the cells reachable from the start under their policy.
+ */
+public class SolverEquivalenceTest {
+
+    private static final int COLS = 24;
+    private static final int ROWS = 16;
+    private static final int MAPS = 5;
+
+    private static final double TOLERANCE = 2 * Solver.EPSILON;
+
+    static GridMap randomMap(Random rnd, int cols, int rows) {
+        GridMap map = new GridMap(cols, rows);
+        for (int i = 0; i < map.size(); i++) {
+            double r = rnd.nextDouble();
+            if (r < 0.2) {
+                map.set(i, CellContent.OBSTACLE);
+            } else if (r < 0.25) {
+                map.set(i, CellContent.PIT);
+            }
+        }
+        map.set(rnd.nextInt(map.size()), CellContent.GOLD);
+        return map;
+    }
+
+    private static int emptyCell(GridMap map, Random rnd) {
+        while (true) {
+            int cell = rnd.nextInt(map.size());
+            if (map.get(cell) == CellContent.EMPTY) {
+                return cell;
+            }
+        }
+    }
+
+    /**
+     * @return the cells reachable from the start under the policy of the solution
+     */
+    private static boolean[] reachable(GridMap map, Solution solution, int start) {
+        SlipModel.Compiled slip = WorldModel.getSlipModel().compile(map);
+        boolean[] visited = new boolean[map.size()];
+        int[] queue = new int[map.size()];
+        int tail = 0;
+        visited[start] = true;
+        queue[tail++] = start;
+        for (int head = 0; head < tail; head++) {
+            int cell = queue[head];
+            if (map.get(cell) != CellContent.EMPTY) {
+                continue;
+            }
+            Action action = solution.action(map.x(cell), map.y(cell));
+            assertNotNull("no action in a reachable cell " + cell, action);
+            for (int k = slip.begin(cell, action); k < slip.end(cell, action); k++) {
+                int target = slip.target(cell, k);
+                if (!visited[target]) {
+                    visited[target] = true;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return visited;
+    }
+
+    private static void assertEquivalent(Solver solver) {
+        Random rnd = new Random(7);
+        for (int i = 0; i < MAPS; i++) {
+            GridMap map = randomMap(rnd, COLS, ROWS);
+            int start = emptyCell(map, rnd);
+            Solution expected = new ValueIterationSolver().solve(WorldModel.compile(map));
+            Solution actual = solver.solve(map, start);
+
+            boolean[] compared = actual.isPartial() ? reachable(map, actual, start) : null;
+            for (int y = 0; y < ROWS; y++) {
+                for (int x = 0; x < COLS; x++) {
+                    if (compared == null || compared[map.index(x, y)]) {
+                        assertEquals(solver + ", map " + i + ", cell (" + x + ", " + y + ")",
+                                expected.value(x, y), actual.value(x, y), TOLERANCE);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void initializedValueIteration() {
+        assertEquivalent(new ValueIterationSolver(true));
+    }
+
+    @Test
+    public void gaussSeidel() {
+        assertEquivalent(new GaussSeidelSolver());
+    }
+
+    @Test
+    public void prioritizedSweeping() {
+        assertEquivalent(new PrioritizedSweepingSolver());
+    }
+
+    @Test
+    public void parallelValueIteration() {
+        assertEquivalent(new ParallelValueIterationSolver(4, 8));
+    }
+
+    @Test
+    public void policyIteration() {
+        assertEquivalent(new PolicyIterationSolver());
+    }
+
+    @Test
+    public void modifiedPolicyIteration() {
+        assertEquivalent(new PolicyIterationSolver(10));
+    }
+
+    @Test
+    public void topologicalValueIteration() {
+        assertEquivalent(new TopologicalValueIterationSolver());
+    }
+
+    @Test
+    public void stencilValueIteration() {
+        assertEquivalent(new StencilValueIterationSolver());
+    }
+
+    @Test
+    public void layoutValueIteration() {
+        for (GridLayout.Order order : GridLayout.Order.values()) {
+            assertEquivalent(new LayoutValueIterationSolver(order));
+        }
+    }
+
+    @Test
+    public void multigrid() {
+        assertEquivalent(new MultigridSolver());
+    }
+
+    @Test
+    public void compactValueIteration() {
+        assertEquivalent(new CompactValueIterationSolver());
+    }
+
+    @Test
+    public void lrtdp() {
+        assertEquivalent(new LrtdpSolver());
+    }
+
+}